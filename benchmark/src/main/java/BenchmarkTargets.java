@@ -0,0 +1,174 @@
+import java.util.Random;
+import java.util.function.IntSupplier;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongSupplier;
+
+/**
+ * The game classes are in the default package, which JMH benchmarks (and any
+ * class of a named package) can not refer to. This class builds the
+ * operations measured by the benchmarks of the meansum.bench package, which
+ * get them once by reflection in their setup and then call them through
+ * plain functional interfaces.
+ *
+ */
+public final class BenchmarkTargets {
+	private BenchmarkTargets() {
+	}
+
+	/**
+	 * Creates a puzzle with random numbers
+	 * @param random The source of randomness.
+	 * @param numberCount The count of numbers of the puzzle.
+	 * @return The puzzle.
+	 */
+	static Puzzle largePuzzle(Random random, int numberCount) {
+		int[] numbers = new int[numberCount];
+		for(int i = 0; i < numberCount; ++i)
+			numbers[i] = (random.nextInt(10) < 3) ? 10 + random.nextInt(90) : 1 + random.nextInt(9);
+		return new Puzzle(numbers, true, 1, 0.3, Puzzle.UNSOLVED);
+	}
+
+	/**
+	 * Creates an engine playing a puzzle with random numbers
+	 */
+	static GameEngine largeGame(int numberCount) {
+		GameEngine engine = new GameEngine();
+		engine.loadPuzzle(largePuzzle(new Random(42), numberCount));
+		return engine;
+	}
+
+	/**
+	 * {@link GameModel#initComponents()}
+	 */
+	public static IntSupplier modelInitComponents() {
+		GameModel model = new GameModel();
+		return () -> {
+			model.initComponents();
+			return model.getGoal();
+		};
+	}
+
+	/**
+	 * {@link GameEngine#newGame()}
+	 */
+	public static IntSupplier engineNewGame() {
+		GameEngine engine = new GameEngine();
+		return () -> {
+			engine.newGame();
+			return engine.getGoal();
+		};
+	}
+
+	/**
+	 * Selections between two resets of the board of the click benchmarks,
+	 * which bound the history of the selections
+	 */
+	private static final int RESET_PERIOD = 1 << 20;
+
+	/**
+	 * Groups every tile of a board but the last one, which is never
+	 * selected so the game is never over
+	 */
+	private static void groupAllButLast(GameEngine engine) {
+		for(int i = 0; i < engine.getNumberOfTiles() - 1; ++i)
+			engine.clickTile(i);
+	}
+
+	/**
+	 * Clicks a tile of a game with many groups: the tile leaves its previous
+	 * group and the sum is updated. The operand selects the tile. The board
+	 * is reset and grouped again now and then, so the history of the
+	 * selections stays small.
+	 */
+	public static IntUnaryOperator clickTile(int numberCount) {
+		GameEngine engine = largeGame(numberCount);
+		groupAllButLast(engine);
+		int tiles = engine.getNumberOfTiles() - 1;
+		int[] selections = new int[1];
+		return i -> {
+			if(++selections[0] == RESET_PERIOD) {
+				selections[0] = 0;
+				engine.resetGame();
+				groupAllButLast(engine);
+			}
+			engine.clickTile(Math.floorMod(i, tiles));
+			return engine.getCurrentSum();
+		};
+	}
+
+	/**
+	 * Selects a pair of tiles in a game with many groups. The operand
+	 * selects the first tile of the pair. The board is reset as for
+	 * {@link #clickTile(int)}.
+	 */
+	public static IntUnaryOperator selectPair(int numberCount) {
+		GameEngine engine = largeGame(numberCount);
+		groupAllButLast(engine);
+		int pairs = engine.getNumberOfTiles() - 2;
+		int[] selections = new int[1];
+		return i -> {
+			if(++selections[0] == RESET_PERIOD) {
+				selections[0] = 0;
+				engine.resetGame();
+				groupAllButLast(engine);
+			}
+			engine.selectPair(Math.floorMod(i, pairs));
+			return engine.getCurrentSum();
+		};
+	}
+
+	/**
+	 * Runs a whole game through the {@link GameModel}: every tile is
+	 * clicked once, with every observer notification.
+	 */
+	public static IntSupplier modelGame() {
+		GameModel model = new GameModel();
+		return () -> {
+			model.nextGame();
+			for(int i = 0; i < model.getNumberOfTiles(); ++i)
+				model.clickTile(i);
+			return model.getCurrentSum();
+		};
+	}
+
+	/**
+	 * {@link Group#getSum(int, byte[])} on a single tile or a pair,
+	 * the operand selecting the group.
+	 */
+	public static IntUnaryOperator groupSum() {
+		byte[] digits = { 4, 7, 0, 9, 2, 5, 8, 1, 3, 6 };
+		int[] groups = new int[16];
+		for(int i = 0; i < groups.length; ++i)
+			groups[i] = Group.of(i % 9, 1 + (i & 1));
+		return i -> Group.getSum(groups[i & 15], digits);
+	}
+
+	/**
+	 * {@link Solver#solve(byte[], int, int, boolean)} on a random puzzle
+	 */
+	public static LongSupplier solve(int numberCount, boolean findWitness) {
+		Puzzle puzzle = largePuzzle(new Random(7), numberCount);
+		byte[] digits = new byte[puzzle.getDigitCount()];
+		puzzle.copyDigits(digits);
+		Solver solver = new Solver();
+		return () -> solver.solve(digits, digits.length, puzzle.getGoal(), findWitness);
+	}
+
+	/**
+	 * {@link ParallelSolver#solve(byte[], int, int)} on a random puzzle
+	 */
+	public static LongSupplier parallelSolve(int numberCount) {
+		Puzzle puzzle = largePuzzle(new Random(7), numberCount);
+		byte[] digits = new byte[puzzle.getDigitCount()];
+		puzzle.copyDigits(digits);
+		ParallelSolver solver = new ParallelSolver();
+		return () -> solver.solve(digits, digits.length, puzzle.getGoal());
+	}
+
+	/**
+	 * {@link PuzzleGenerator#generateSolved(boolean, int)} at an arcade level
+	 */
+	public static LongSupplier generateSolved(int level) {
+		return () -> PuzzleGenerator.generateSolved(true, level).getSolutionCount();
+	}
+}
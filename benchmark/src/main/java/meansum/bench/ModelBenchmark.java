@@ -0,0 +1,98 @@
+package meansum.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.function.IntUnaryOperator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-click and per-game paths of the model: puzzle generation, tile and
+ * pair selection (leaving the previous group and updating the sum) on
+ * boards with many groups, and a whole game through the observers.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelBenchmark {
+	/**
+	 * A board with many groups, whose size is the only parameter of the
+	 * benchmarks, so the other benchmarks run once
+	 */
+	@State(Scope.Thread)
+	public static class Board {
+		/**
+		 * Count of numbers of the board
+		 */
+		@Param({ "6", "100", "10000" })
+		public int numberCount;
+
+		private IntUnaryOperator clickTile;
+		private IntUnaryOperator selectPair;
+		private int position;
+
+		@Setup
+		public void setup() {
+			clickTile = Targets.get(IntUnaryOperator.class, "clickTile", numberCount);
+			selectPair = Targets.get(IntUnaryOperator.class, "selectPair", numberCount);
+		}
+
+		/**
+		 * Walks the board with a stride so consecutive clicks hit different groups
+		 */
+		int next() {
+			position += 7;
+			return position;
+		}
+	}
+
+	private IntSupplier initComponents;
+	private IntSupplier newGame;
+	private IntSupplier game;
+
+	@Setup
+	public void setup() {
+		initComponents = Targets.get(IntSupplier.class, "modelInitComponents");
+		newGame = Targets.get(IntSupplier.class, "engineNewGame");
+		game = Targets.get(IntSupplier.class, "modelGame");
+	}
+
+	@Benchmark
+	public int initComponents() {
+		return initComponents.getAsInt();
+	}
+
+	@Benchmark
+	public int newGame() {
+		return newGame.getAsInt();
+	}
+
+	@Benchmark
+	public int wholeGame() {
+		return game.getAsInt();
+	}
+
+	@Benchmark
+	public int clickTile(Board board) {
+		return board.clickTile.applyAsInt(board.next());
+	}
+
+	@Benchmark
+	public int selectPair(Board board) {
+		return board.selectPair.applyAsInt(board.next());
+	}
+}
@@ -0,0 +1,67 @@
+package meansum.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Solvers on puzzles of growing size, and the generation of solved puzzles.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolverBenchmark {
+	/**
+	 * Count of numbers of the solved puzzle
+	 */
+	@Param({ "6", "100", "1000" })
+	public int numberCount;
+
+	private LongSupplier count;
+	private LongSupplier countWithWitness;
+	private LongSupplier parallelCount;
+	private LongSupplier generateArcade;
+
+	@Setup
+	public void setup() {
+		count = Targets.get(LongSupplier.class, "solve", numberCount, false);
+		countWithWitness = Targets.get(LongSupplier.class, "solve", numberCount, true);
+		parallelCount = Targets.get(LongSupplier.class, "parallelSolve", numberCount);
+		generateArcade = Targets.get(LongSupplier.class, "generateSolved", 20);
+	}
+
+	@Benchmark
+	public long solve() {
+		return count.getAsLong();
+	}
+
+	@Benchmark
+	public long solveWithWitness() {
+		return countWithWitness.getAsLong();
+	}
+
+	@Benchmark
+	public long parallelSolve() {
+		return parallelCount.getAsLong();
+	}
+
+	@Benchmark
+	public long generateSolvedArcade() {
+		return generateArcade.getAsLong();
+	}
+}
@@ -0,0 +1,33 @@
+package meansum.bench;
+
+import java.lang.reflect.Method;
+
+/**
+ * Looks up the operations built by the BenchmarkTargets class of the default
+ * package, which benchmark classes can not refer to directly.
+ *
+ */
+final class Targets {
+	private Targets() {
+	}
+
+	/**
+	 * Builds an operation
+	 * @param type The functional interface of the operation.
+	 * @param name The name of the factory method of BenchmarkTargets.
+	 * @param args The arguments of the factory method (int or boolean).
+	 * @return The operation.
+	 */
+	static <T> T get(Class<T> type, String name, Object... args) {
+		try {
+			Class<?> targets = Class.forName("BenchmarkTargets");
+			for(Method method : targets.getMethods()) {
+				if(method.getName().equals(name) && method.getParameterCount() == args.length)
+					return type.cast(method.invoke(null, args));
+			}
+			throw new IllegalArgumentException("No benchmark target " + name);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Could not build benchmark target " + name, e);
+		}
+	}
+}
@@ -0,0 +1,229 @@
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * The action log records the actions of a player in a compact binary form,
+ * to replay the session later with a {@link GameReplay}.
+ * The log starts with a header: the magic number, the version, the mode and
+ * level of the game and the seed of its engine (16 bytes, big-endian). Each
+ * action follows as a variable-length integer (7 bits per byte, the high bit
+ * set on every byte but the last) holding the action in its 3 lowest bits
+ * and the position of the tile above them, so a click on one of the first 16
+ * tiles takes a single byte. Undo and redo are recorded as resets of the
+ * history steps: a RESET record holds 0 for a reset of the groups, 1 for an
+ * undo and 2 for a redo. The puzzle of every new game is recorded right
+ * before the action that created it, so a session replays the same games
+ * whatever the source of its puzzles.
+ *
+ */
+public final class ActionLog {
+	/**
+	 * Magic number of the log files ("MSLG")
+	 */
+	public static final int MAGIC = 0x4D534C47;
+	/**
+	 * Version of the format
+	 */
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 16;
+
+	// Actions, in the 3 lowest bits of each record
+	static final int CLICK = 0;
+	static final int PAIR = 1;
+	static final int RESET = 2;
+	static final int NEXT = 3;
+	static final int NEW = 4;
+	static final int ARCADE = 5;
+	static final int RESTART = 6;
+	static final int PUZZLE = 7;
+	static final int ACTION_BITS = 3;
+	// Positions of the RESET records
+	static final int RESET_GROUPS = 0;
+	static final int UNDO = 1;
+	static final int REDO = 2;
+
+	private ActionLog() {
+	}
+
+	/**
+	 * Starts the log of a game: writes the header and the current puzzle
+	 * @param out The stream receiving the log.
+	 * @param engine The engine of the game, in its state when the log starts.
+	 * @return The writer of the log, to close at the end of the session.
+	 */
+	public static Writer record(OutputStream out, GameEngine engine) {
+		if(out == null)
+			throw new IllegalArgumentException("Should provide a valid OutputStream!");
+		Writer writer = new Writer(out);
+		writer.writeInt(MAGIC);
+		writer.writeShort(VERSION);
+		writer.writeByte(engine.isArcadeEnabled() ? 1 : 0);
+		writer.writeByte(engine.getLevel());
+		writer.writeLong(engine.getSeed());
+		writer.puzzle(engine.getPuzzle());
+		return writer;
+	}
+
+	/**
+	 * Writes the actions of a log. The records are buffered: they reach the
+	 * stream when the buffer is full, flushed or closed. Write failures are
+	 * thrown as {@link UncheckedIOException}.
+	 */
+	public static class Writer implements Closeable, Flushable {
+		private final OutputStream out;
+		private final byte[] buffer = new byte[8192];
+		private int size;
+
+		private Writer(OutputStream out) {
+			this.out = out;
+		}
+
+		/**
+		 * Records a click on a tile
+		 * @param position The position of the tile.
+		 */
+		public void click(int position) {
+			writeAction(CLICK, position);
+		}
+
+		/**
+		 * Records the selection of a pair
+		 * @param position The position of the first tile of the pair.
+		 */
+		public void pair(int position) {
+			writeAction(PAIR, position);
+		}
+
+		/**
+		 * Records a reset of the groups
+		 */
+		public void reset() {
+			writeAction(RESET, RESET_GROUPS);
+		}
+
+		/**
+		 * Records an undo of the latest selection
+		 */
+		public void undo() {
+			writeAction(RESET, UNDO);
+		}
+
+		/**
+		 * Records a redo of the latest undone selection
+		 */
+		public void redo() {
+			writeAction(RESET, REDO);
+		}
+
+		/**
+		 * Records a request for the next game
+		 */
+		public void next() {
+			writeAction(NEXT, 0);
+		}
+
+		/**
+		 * Records an unconditional new game
+		 */
+		public void newGame() {
+			writeAction(NEW, 0);
+		}
+
+		/**
+		 * Records a switch of mode
+		 */
+		public void arcade() {
+			writeAction(ARCADE, 0);
+		}
+
+		/**
+		 * Records a restart of the arcade mode
+		 */
+		public void restart() {
+			writeAction(RESTART, 0);
+		}
+
+		/**
+		 * Records the puzzle of the game created by the next action
+		 * @param puzzle The puzzle.
+		 */
+		public void puzzle(Puzzle puzzle) {
+			int[] numbers = puzzle.getNumbers();
+			writeAction(PUZZLE, numbers.length);
+			writeByte((puzzle.getLevel() << 1) | (puzzle.isArcade() ? 1 : 0));
+			for(int number : numbers)
+				writeByte(number);
+		}
+
+		private void writeAction(int action, int position) {
+			writeVarint((position << ACTION_BITS) | action);
+		}
+
+		private void writeVarint(int value) {
+			while((value & ~0x7F) != 0) {
+				writeByte((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			writeByte(value);
+		}
+
+		private void writeShort(int value) {
+			writeByte(value >>> 8);
+			writeByte(value);
+		}
+
+		private void writeInt(int value) {
+			writeShort(value >>> 16);
+			writeShort(value);
+		}
+
+		private void writeLong(long value) {
+			writeInt((int) (value >>> 32));
+			writeInt((int) value);
+		}
+
+		private void writeByte(int value) {
+			if(size == buffer.length)
+				drain();
+			buffer[size++] = (byte) value;
+		}
+
+		/**
+		 * Writes the buffered records to the stream
+		 */
+		private void drain() {
+			try {
+				out.write(buffer, 0, size);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			size = 0;
+		}
+
+		@Override
+		public void flush() {
+			drain();
+			try {
+				out.flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public void close() {
+			try {
+				drain();
+			} finally {
+				try {
+					out.close();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}
+	}
+}
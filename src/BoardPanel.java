@@ -0,0 +1,351 @@
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import javax.swing.JComponent;
+import javax.swing.JViewport;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+
+/**
+ * The board panel displays all the tiles of the game like the
+ * {@link TilePanel}, but paints them itself as a single component: there is
+ * no component, layout or listener per tile. The digits are drawn from
+ * images cached by a {@link GlyphCache} and only the tiles whose state
+ * changed are repainted.
+ * In a scroll pane, the board keeps the tiles readable on large games: it
+ * stretches its tiles over the viewport while they fit, and scrolls
+ * otherwise. The tiles under the viewport are found arithmetically from the
+ * scroll offset and their state read from the model when painted, so the
+ * cost of the board depends on the size of the viewport, not on the number
+ * of tiles.
+ *
+ */
+public class BoardPanel extends JComponent implements GameListener, Scrollable {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = -3046918375416523794L;
+	/**
+	 * Largest size of the digits, in points, as on the tiles of the TilePanel
+	 */
+	private static final int MAX_FONT_SIZE = 85;
+	/**
+	 * Preferred size of a tile, the width being the smallest width of a tile
+	 * before the board scrolls
+	 */
+	private static final int TILE_WIDTH = 70;
+	private static final int TILE_HEIGHT = 200;
+	/**
+	 * Number of tiles the scroll pane of the board asks room for
+	 */
+	private static final int VISIBLE_TILES = 12;
+	/**
+	 * Images of the digits, shared by every board
+	 */
+	private static final GlyphCache GLYPHS = new GlyphCache(new Font("Bold", Font.BOLD, MAX_FONT_SIZE));
+
+	/**
+	 * The board holds a reference to the game model to request information
+	 * to display (view) and to modify its state (controller)
+	 */
+	private GameModel gameModel;
+	private ColorGenerator colorgen = new ColorGenerator();
+	private int tileCount;
+	/**
+	 * Colour of each group, indexed by the id of the group in the game model
+	 */
+	private Color[] groupColours = new Color[0];
+	/**
+	 * Group given each colour: an id freed by the game model and reused by
+	 * another group gets a new colour
+	 */
+	private int[] colouredGroups = new int[0];
+
+	/**
+	 * Constructor
+	 * @param gameModel the model to handle
+	 */
+	public BoardPanel(GameModel gameModel) {
+		if (gameModel == null)
+			throw new IllegalArgumentException("Should provide a valid instance of GameModel!");
+		this.gameModel = gameModel;
+		gameModel.subscribe(this, GameModel.MessCode.NEW, GameModel.MessCode.ARCADE,
+				GameModel.MessCode.RESTART, GameModel.MessCode.RESET, GameModel.MessCode.SUMCHANGED);
+		setOpaque(true);
+		MouseAdapter mouseAdapter = new MouseAdapter() {
+			// Tile on which the mouse was pressed, or -1
+			int pressedTile = -1;
+			// Whether the mouse left the pressed tile
+			boolean left = false;
+
+			/**
+			 * Method that is called on mouseClick
+			 */
+			public void mouseClicked(MouseEvent e) {
+				int position = tileAt(e.getX());
+				// Sets color for the group if game isn't won or lost
+				if(gameModel.clickTile(position) && !gameModel.isGameOver())
+					newGroupColour(position);
+			}
+
+			// Remembers the tile on which the mouse is pressed
+			public void mousePressed(MouseEvent e) {
+				pressedTile = tileAt(e.getX());
+				left = false;
+			}
+
+			public void mouseReleased(MouseEvent e) {
+				pressedTile = -1;
+			}
+
+			// Selects the pressed tile and the next one as a pair when the
+			// mouse leaves the pressed tile while being held down
+			public void mouseDragged(MouseEvent e) {
+				if(pressedTile < 0)
+					return;
+				boolean outside = tileAt(e.getX()) != pressedTile;
+				if(outside && !left && gameModel.selectPair(pressedTile) && !gameModel.isGameOver())
+					newGroupColour(pressedTile);
+				left = outside;
+			}
+		};
+		addMouseListener(mouseAdapter);
+		addMouseMotionListener(mouseAdapter);
+		bindTiles();
+	}
+
+	/**
+	 * Binds the board to the digits of the current game
+	 */
+	private void bindTiles() {
+		long begin = gameModel.getMetrics().begin();
+		tileCount = gameModel.getNumberOfTiles();
+		if(groupColours.length < tileCount) {
+			groupColours = new Color[tileCount];
+			colouredGroups = new int[tileCount];
+		}
+		else
+			Arrays.fill(groupColours, null);
+		colorgen.reset();
+		// The groups of a restored game are coloured as if just selected
+		GameSnapshot snapshot = gameModel.getSnapshot();
+		for(int i = 0; i < tileCount; ++i) {
+			if(snapshot.groupIdAt(i) >= 0)
+				groupColour(snapshot, i);
+		}
+		revalidate();
+		repaint();
+		// A new game starts on its first tile
+		if(getParent() instanceof JViewport)
+			((JViewport) getParent()).setViewPosition(new Point(0, 0));
+		gameModel.getMetrics().end(GameMetrics.Probe.REBUILD, begin);
+	}
+
+	/**
+	 * Changes the active colour
+	 */
+	public void changeColour() {
+		colorgen.next();
+	}
+
+	/**
+	 * Gives the active colour to the group of a tile, which has just been created
+	 * @param position The position of a tile of the group.
+	 */
+	private void newGroupColour(int position) {
+		GameSnapshot snapshot = gameModel.getSnapshot();
+		int id = snapshot.groupIdAt(position);
+		groupColours[id] = colorgen.getCurrent();
+		colouredGroups[id] = snapshot.groupAt(position);
+		changeColour();
+		// The tiles of the group were painted before the group had a colour
+		repaintTiles(position, position + 1);
+	}
+
+	/**
+	 * Gets the colour of the group of a tile. A group gets the active colour
+	 * when its id has no colour yet or had the colour of another group: a
+	 * group of a restored game, or brought back by an undo or a redo.
+	 * @param snapshot The state of the game.
+	 * @param position The position of a tile in a group.
+	 * @return The colour of the group.
+	 */
+	private Color groupColour(GameSnapshot snapshot, int position) {
+		int id = snapshot.groupIdAt(position);
+		int group = snapshot.groupAt(position);
+		if(groupColours[id] == null || colouredGroups[id] != group) {
+			groupColours[id] = colorgen.getCurrent();
+			colouredGroups[id] = group;
+			changeColour();
+		}
+		return groupColours[id];
+	}
+
+	/**
+	 * Gets the colour of a tile from the state of the game: green or red
+	 * once the game is over, the colour of its group, or white.
+	 * @param position The position of the tile.
+	 * @return The background colour of the tile.
+	 */
+	private Color tileColour(int position) {
+		if(gameModel.isGameOver())
+			return gameModel.isGameWon() ? Color.green : Color.red;
+		GameSnapshot snapshot = gameModel.getSnapshot();
+		return (snapshot.groupIdAt(position) < 0) ? Color.white : groupColour(snapshot, position);
+	}
+
+	/**
+	 * Gets the x coordinate of the left edge of a tile. The tiles share
+	 * the width of the board.
+	 * @param position The position of the tile, or the number of tiles for the right edge of the board.
+	 * @return The x coordinate.
+	 */
+	private int tileX(int position) {
+		return (int) ((long) position * getWidth() / tileCount);
+	}
+
+	/**
+	 * Gets the tile under an x coordinate
+	 * @param x The x coordinate.
+	 * @return The position of the tile, or -1 outside the board.
+	 */
+	private int tileAt(int x) {
+		if(x < 0 || x >= getWidth() || tileCount == 0)
+			return -1;
+		// Inverse of tileX: the last tile starting at or before x
+		return (int) (((long) (x + 1) * tileCount - 1) / getWidth());
+	}
+
+	/**
+	 * Marks the area of a range of tiles to be repainted
+	 * @param first The first tile.
+	 * @param last The last tile.
+	 */
+	private void repaintTiles(int first, int last) {
+		first = Math.max(first, 0);
+		last = Math.min(last, tileCount - 1);
+		if(first > last)
+			return;
+		int x = tileX(first);
+		repaint(x, 0, tileX(last + 1) - x, getHeight());
+	}
+
+	@Override
+	public Dimension getPreferredSize() {
+		if(isPreferredSizeSet())
+			return super.getPreferredSize();
+		// Swing coordinates are ints, which bounds the number of tiles that scroll
+		long width = (long) Math.max(1, tileCount) * TILE_WIDTH;
+		return new Dimension((int) Math.min(width, Integer.MAX_VALUE), TILE_HEIGHT);
+	}
+
+	/**
+	 * The viewport asks for a few tiles, however large the game
+	 */
+	@Override
+	public Dimension getPreferredScrollableViewportSize() {
+		return new Dimension(Math.max(1, Math.min(tileCount, VISIBLE_TILES)) * TILE_WIDTH, TILE_HEIGHT);
+	}
+
+	/**
+	 * Scrolls by one tile
+	 */
+	@Override
+	public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+		return (orientation == SwingConstants.HORIZONTAL) ? TILE_WIDTH : 1;
+	}
+
+	/**
+	 * Scrolls by the tiles fully visible in the viewport
+	 */
+	@Override
+	public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+		if(orientation != SwingConstants.HORIZONTAL)
+			return visibleRect.height;
+		return Math.max(TILE_WIDTH, visibleRect.width - visibleRect.width % TILE_WIDTH);
+	}
+
+	/**
+	 * The tiles are stretched over the viewport as long as they are at
+	 * least {@link #TILE_WIDTH} wide, the board scrolls otherwise
+	 */
+	@Override
+	public boolean getScrollableTracksViewportWidth() {
+		return getParent() instanceof JViewport
+				&& (long) getParent().getWidth() >= (long) tileCount * TILE_WIDTH;
+	}
+
+	@Override
+	public boolean getScrollableTracksViewportHeight() {
+		return getParent() instanceof JViewport;
+	}
+
+	/**
+	 * Paints the tiles that intersect the area to repaint
+	 */
+	@Override
+	protected void paintComponent(Graphics g) {
+		Rectangle clip = g.getClipBounds();
+		if(clip == null)
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
+		if(tileCount == 0) {
+			g.setColor(getBackground());
+			g.fillRect(clip.x, clip.y, clip.width, clip.height);
+			return;
+		}
+		long begin = gameModel.getMetrics().begin();
+		int first = Math.max(0, tileAt(Math.max(clip.x, 0)));
+		int last = tileAt(Math.min(clip.x + clip.width, getWidth()) - 1);
+		int height = getHeight();
+		// The digits have the same size on every tile
+		int fontSize = Math.min(MAX_FONT_SIZE, Math.min(tileX(1), height));
+		for(int i = first; i <= last; ++i) {
+			int x = tileX(i);
+			int width = tileX(i + 1) - x;
+			g.setColor(tileColour(i));
+			g.fillRect(x, 0, width, height);
+			g.setColor(Color.black);
+			g.drawRect(x, 0, width - 1, height - 1);
+			if(fontSize > 0) {
+				BufferedImage glyph = GLYPHS.getGlyph(gameModel.getDigit(i), fontSize, Color.black);
+				g.drawImage(glyph, x + (width - glyph.getWidth()) / 2, (height - glyph.getHeight()) / 2, null);
+			}
+		}
+		gameModel.getMetrics().painted(begin);
+	}
+
+	/**
+	 * This method is called when the GameModel posts an event
+	 * this board subscribed to.
+	 * */
+	@Override
+	public void gameChanged(GameEvent event) {
+		GameModel.MessCode code = event.getCode();
+		if(code==GameModel.MessCode.NEW || code==GameModel.MessCode.ARCADE ||
+				code==GameModel.MessCode.RESTART){
+			// A new game has started, bind the board to its digits
+			bindTiles();
+		}
+		else if(code==GameModel.MessCode.RESET){
+			// No tile is in a group anymore
+			repaint();
+		}
+		else if(code==GameModel.MessCode.SUMCHANGED){
+			if(gameModel.isGameOver())
+				// Every tile has been clicked, show whether the game is won
+				repaint();
+			else
+				// Only the tiles whose group changed need a new colour
+				repaintTiles(event.getFirstTile(), event.getLastTile());
+		}
+	}
+}
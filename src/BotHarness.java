@@ -0,0 +1,236 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The bot harness simulates many concurrent players, to measure how the
+ * game model behaves under load. Each player owns its own {@link GameModel}
+ * (the model is not shared, so it needs no synchronization) and plays arcade
+ * runs from level 1 until it loses a game or wins the last level, with one
+ * of the {@link BotStrategies}. Each player runs on its own virtual thread
+ * when the Java runtime has them (Java 21 and later), and on a pool of
+ * platform threads otherwise.
+ * The harness reports the throughput, the percentiles of the latency of the
+ * actions on the model and the memory allocated per game.
+ *
+ */
+public class BotHarness {
+	private final int players;
+	private final int runs;
+	private final String strategy;
+	private final long seed;
+
+	/**
+	 * Constructor
+	 * @param players The number of simulated players.
+	 * @param runs The number of arcade runs of each player.
+	 * @param strategy The name of the strategy of the players (see {@link BotStrategies}).
+	 * @param seed The seed of the games and strategies.
+	 */
+	public BotHarness(int players, int runs, String strategy, long seed) {
+		if(players < 1 || runs < 1)
+			throw new IllegalArgumentException("Should simulate at least one run of one player");
+		// Fail before starting any thread if the strategy is unknown
+		BotStrategies.create(strategy, new Random());
+		this.players = players;
+		this.runs = runs;
+		this.strategy = strategy;
+		this.seed = seed;
+	}
+
+	/**
+	 * A simulated player, owning its model
+	 */
+	static final class Player implements Runnable {
+		private final int runs;
+		private final BotStrategy strategy;
+		private final long seed;
+		final LatencyHistogram latencies = new LatencyHistogram();
+		long actions;
+		long games;
+		long wins;
+		long completedRuns;
+		long levels;
+
+		Player(int runs, BotStrategy strategy, long seed) {
+			this.runs = runs;
+			this.strategy = strategy;
+			this.seed = seed;
+		}
+
+		@Override
+		public void run() {
+			GameModel model = new GameModel(new PuzzleGenerator(), GameEventBus.direct(), seed);
+			GameEngine engine = model.getEngine();
+			timed(model, Action.ARCADE, 0);
+			for(int run = 0; run < runs; ++run) {
+				if(run > 0)
+					timed(model, Action.RESTART, 0);
+				// One arcade run: play until a game is lost or the last level is won
+				while(true) {
+					strategy.gameStarted(engine);
+					while(!engine.isGameOver()) {
+						int move = strategy.nextMove(engine);
+						timed(model, (Group.length(move) == 2) ? Action.PAIR : Action.CLICK, Group.start(move));
+					}
+					++games;
+					if(!engine.isGameWon())
+						break;
+					++wins;
+					if(engine.getPuzzle().getLevel() == GameEngine.MAX_LEVEL) {
+						++completedRuns;
+						break;
+					}
+					timed(model, Action.NEXT, 0);
+				}
+				levels += engine.getLevel();
+			}
+		}
+
+		/**
+		 * Applies an action to the model and records its latency
+		 */
+		private void timed(GameModel model, Action action, int position) {
+			long start = System.nanoTime();
+			switch(action) {
+			case CLICK:
+				model.clickTile(position);
+				break;
+			case PAIR:
+				model.selectPair(position);
+				break;
+			case NEXT:
+				model.nextGame();
+				break;
+			case ARCADE:
+				model.arcadeGame();
+				break;
+			default:
+				model.restartGame();
+				break;
+			}
+			latencies.record(System.nanoTime() - start);
+			++actions;
+		}
+	}
+
+	private static enum Action{CLICK, PAIR, NEXT, ARCADE, RESTART};
+
+	/**
+	 * Runs every player to the end of its runs and prints the report
+	 * @param out The stream receiving the report.
+	 * @throws InterruptedException if interrupted while waiting for the players.
+	 */
+	public void run(PrintStream out) throws InterruptedException {
+		List<Player> simulated = new ArrayList<Player>(players);
+		Random seeds = new Random(seed);
+		for(int i = 0; i < players; ++i) {
+			long playerSeed = seeds.nextLong();
+			simulated.add(new Player(runs, BotStrategies.create(strategy, new Random(playerSeed)), playerSeed));
+		}
+		boolean virtual = true;
+		ExecutorService executor = newVirtualThreadExecutor();
+		if(executor == null) {
+			virtual = false;
+			executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		}
+		final CountDownLatch done = new CountDownLatch(players);
+		long allocatedBefore = allocatedBytes();
+		long start = System.nanoTime();
+		for(final Player player : simulated) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						player.run();
+					} finally {
+						done.countDown();
+					}
+				}
+			});
+		}
+		done.await();
+		long elapsed = System.nanoTime() - start;
+		// The threads that ran the players must still be alive to be counted
+		long allocated = allocatedBytes() - allocatedBefore;
+		executor.shutdown();
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+		LatencyHistogram latencies = new LatencyHistogram();
+		long actions = 0, games = 0, wins = 0, completedRuns = 0, levels = 0;
+		for(Player player : simulated) {
+			latencies.add(player.latencies);
+			actions += player.actions;
+			games += player.games;
+			wins += player.wins;
+			completedRuns += player.completedRuns;
+			levels += player.levels;
+		}
+		double seconds = elapsed / 1e9;
+		out.printf("%d players (%s threads), %d runs each, strategy %s%n", players,
+				virtual ? "virtual" : "platform", runs, strategy);
+		out.printf("Time: %.3f s%n", seconds);
+		out.printf("Throughput: %.0f actions/s, %.0f games/s%n", actions / seconds, games / seconds);
+		out.printf("Games: %d, won %d, runs completed %d of %d, mean final level %.2f%n", games, wins,
+				completedRuns, (long) players * runs, (double) levels / ((long) players * runs));
+		out.printf("Action latency (us): mean %.2f, p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, max %.2f%n",
+				latencies.getMean() / 1e3, latencies.getPercentile(50) / 1e3, latencies.getPercentile(90) / 1e3,
+				latencies.getPercentile(99) / 1e3, latencies.getPercentile(99.9) / 1e3, latencies.getMax() / 1e3);
+		if(allocated >= 0)
+			out.printf("Allocation: %.0f bytes per game%n", (double) allocated / Math.max(games, 1));
+		else
+			out.println("Allocation: not measured by this Java runtime");
+	}
+
+	/**
+	 * Creates an executor running each task on a new virtual thread
+	 * @return The executor, or null if the Java runtime has no virtual threads.
+	 */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			// Looked up at run time: the game is compiled for Java 8
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the memory allocated so far by the live threads. The allocations
+	 * of virtual threads are counted on the platform threads carrying them.
+	 * @return The number of bytes, or -1 if the Java runtime does not count them.
+	 */
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if(!(threads instanceof com.sun.management.ThreadMXBean))
+			return -1;
+		com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+		if(!counter.isThreadAllocatedMemorySupported() || !counter.isThreadAllocatedMemoryEnabled())
+			return -1;
+		long total = 0;
+		for(long bytes : counter.getThreadAllocatedBytes(threads.getAllThreadIds()))
+			if(bytes > 0)
+				total += bytes;
+		return total;
+	}
+
+	/**
+	 * Runs the harness
+	 * @param args The number of players (10000 by default), the number of
+	 * runs of each player (1), the strategy (solver) and the seed (1).
+	 * @throws InterruptedException if interrupted while waiting for the players.
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		int players = (args.length > 0) ? Integer.parseInt(args[0]) : 10000;
+		int runs = (args.length > 1) ? Integer.parseInt(args[1]) : 1;
+		String strategy = (args.length > 2) ? args[2] : BotStrategies.SOLVER;
+		long seed = (args.length > 3) ? Long.parseLong(args[3]) : 1;
+		new BotHarness(players, runs, strategy, seed).run(System.out);
+	}
+}
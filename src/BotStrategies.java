@@ -0,0 +1,117 @@
+import java.util.Random;
+
+/**
+ * The play strategies of the simulated players: random moves, greedy
+ * pairs, or the moves of a solution found by the {@link Solver}.
+ *
+ */
+public final class BotStrategies {
+	/**
+	 * Names of the strategies, for {@link #create(String, Random)}
+	 */
+	public static final String RANDOM = "random";
+	public static final String GREEDY = "greedy";
+	public static final String SOLVER = "solver";
+
+	private BotStrategies() {
+	}
+
+	/**
+	 * Creates a strategy from its name
+	 * @param name The name of the strategy.
+	 * @param random The source of randomness of the strategy.
+	 * @return The strategy.
+	 */
+	public static BotStrategy create(String name, Random random) {
+		if(RANDOM.equals(name))
+			return new RandomStrategy(random);
+		if(GREEDY.equals(name))
+			return new GreedyStrategy();
+		if(SOLVER.equals(name))
+			return new SolverStrategy();
+		throw new IllegalArgumentException("Unknown strategy: " + name);
+	}
+
+	/**
+	 * Groups a random free tile, alone or with the next tile if it is free
+	 */
+	static final class RandomStrategy implements BotStrategy {
+		private final Random random;
+
+		RandomStrategy(Random random) {
+			if(random == null)
+				throw new IllegalArgumentException("Should provide a valid Random!");
+			this.random = random;
+		}
+
+		@Override
+		public void gameStarted(GameEngine engine) {
+		}
+
+		@Override
+		public int nextMove(GameEngine engine) {
+			int tiles = engine.getNumberOfTiles();
+			// The first free tile from a random position
+			int position = random.nextInt(tiles);
+			while(engine.isClicked(position))
+				position = (position + 1) % tiles;
+			boolean pair = position + 1 < tiles && !engine.isClicked(position + 1) && random.nextBoolean();
+			return Group.of(position, pair ? 2 : 1);
+		}
+	}
+
+	/**
+	 * Plays from left to right, taking a pair whenever the goal can still be
+	 * reached with the remaining tiles alone
+	 */
+	static final class GreedyStrategy implements BotStrategy {
+		@Override
+		public void gameStarted(GameEngine engine) {
+		}
+
+		@Override
+		public int nextMove(GameEngine engine) {
+			int tiles = engine.getNumberOfTiles();
+			int position = 0;
+			while(engine.isClicked(position))
+				++position;
+			if(position + 1 >= tiles || engine.isClicked(position + 1))
+				return Group.of(position, 1);
+			// Single digits give the smallest sum of the tiles left
+			int rest = 0;
+			for(int i = position + 2; i < tiles; ++i)
+				if(!engine.isClicked(i))
+					rest += engine.getDigit(i);
+			int pair = engine.getDigit(position) * 10 + engine.getDigit(position + 1);
+			boolean fits = engine.getCurrentSum() + pair + rest <= engine.getGoal();
+			return Group.of(position, fits ? 2 : 1);
+		}
+	}
+
+	/**
+	 * Plays the groups of a solution found when the game starts
+	 */
+	static final class SolverStrategy implements BotStrategy {
+		private final Solver solver = new Solver();
+		private byte[] digits = new byte[0];
+		private int[] solution;
+		private int next;
+
+		@Override
+		public void gameStarted(GameEngine engine) {
+			int tiles = engine.getNumberOfTiles();
+			if(digits.length < tiles)
+				digits = new byte[tiles];
+			engine.getPuzzle().copyDigits(digits);
+			solver.solve(digits, tiles, engine.getGoal(), true);
+			// The numbers of the puzzle always make a solution
+			solution = solver.getWitness();
+			next = 0;
+		}
+
+		@Override
+		public int nextMove(GameEngine engine) {
+			return solution[next++];
+		}
+	}
+}
@@ -0,0 +1,21 @@
+/**
+ * A play strategy of the simulated players of the {@link BotHarness}.
+ * A strategy instance belongs to a single player.
+ *
+ */
+public interface BotStrategy {
+	/**
+	 * Called when a new game starts
+	 * @param engine The engine of the game, to read its state.
+	 */
+	void gameStarted(GameEngine engine);
+
+	/**
+	 * Chooses the next move of the player. Every move must group at least
+	 * one tile that is not in a group yet, so a game always ends.
+	 * @param engine The engine of the game, to read its state.
+	 * @return The group to select, packed with {@link Group#of(int, int)}:
+	 * a tile to click alone or the first tile of a pair.
+	 */
+	int nextMove(GameEngine engine);
+}
@@ -0,0 +1,85 @@
+import java.awt.Dimension;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Insets;
+
+import javax.swing.JComponent;
+import javax.swing.UIManager;
+
+/**
+ * The clock label displays the time of a {@link GameClock}, as
+ * "Time elapsed: mm:ss". It writes the digits in place in a char array and
+ * paints them directly, so following the clock allocates nothing, and it is
+ * only repainted when the displayed second changes.
+ *
+ */
+public class ClockLabel extends JComponent {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = -2906406383390566126L;
+	private static final String PREFIX = "Time elapsed: ";
+	// The widest text, for the preferred size (hours are shown as minutes)
+	private static final String WIDEST = PREFIX + "000:00";
+
+	private final char[] text = new char[WIDEST.length()];
+	private int length;
+	private long shownSeconds = -1;
+
+	/**
+	 * Constructor
+	 */
+	public ClockLabel() {
+		PREFIX.getChars(0, PREFIX.length(), text, 0);
+		setFont(UIManager.getFont("Label.font"));
+		setForeground(UIManager.getColor("Label.foreground"));
+		show(0);
+	}
+
+	/**
+	 * Displays a time, if its second is not already displayed
+	 * @param elapsedMillis The time, in milliseconds.
+	 */
+	public void show(long elapsedMillis) {
+		long seconds = elapsedMillis / 1000;
+		if(seconds == shownSeconds)
+			return;
+		shownSeconds = seconds;
+		long minutes = Math.min(seconds / 60, 999);
+		int position = PREFIX.length();
+		if(minutes >= 100)
+			text[position++] = (char) ('0' + minutes / 100);
+		text[position++] = (char) ('0' + minutes / 10 % 10);
+		text[position++] = (char) ('0' + minutes % 10);
+		text[position++] = ':';
+		text[position++] = (char) ('0' + seconds % 60 / 10);
+		text[position++] = (char) ('0' + seconds % 10);
+		length = position;
+		repaint();
+	}
+
+	@Override
+	public Dimension getPreferredSize() {
+		if(isPreferredSizeSet())
+			return super.getPreferredSize();
+		FontMetrics metrics = getFontMetrics(getFont());
+		Insets insets = getInsets();
+		return new Dimension(metrics.stringWidth(WIDEST) + insets.left + insets.right,
+				metrics.getHeight() + insets.top + insets.bottom);
+	}
+
+	@Override
+	public Dimension getMaximumSize() {
+		return getPreferredSize();
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		FontMetrics metrics = g.getFontMetrics(getFont());
+		Insets insets = getInsets();
+		g.setFont(getFont());
+		g.setColor(getForeground());
+		g.drawChars(text, 0, length, insets.left, insets.top + metrics.getAscent());
+	}
+}
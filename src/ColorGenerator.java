@@ -1,4 +1,5 @@
 import java.awt.Color;
+import java.util.Random;
 
 /**
  * This class allows to iterate on a table of colors
@@ -14,11 +15,28 @@ public class ColorGenerator {
 	// are for demonstration purposes only. YOU SHOULD REMOVE THESE FROM YOUR APPLICATION.
 	private int currentIndex = 0;
 	private Color current=null;
+	/**
+	 * Draws the colours once the table is exhausted
+	 */
+	private final Random random;
 	
 	/**
 	 * Constructor
 	 */
 	public ColorGenerator(){
+		this(new Random());
+	}
+	
+	/**
+	 * Constructor
+	 * @param seed The seed of the colours drawn once the table is exhausted.
+	 */
+	public ColorGenerator(long seed){
+		this(new Random(seed));
+	}
+	
+	private ColorGenerator(Random random){
+		this.random = random;
 		initializeColours();
 	}
 	
@@ -27,6 +45,7 @@ public class ColorGenerator {
 	 */
 	public void reset(){
 		currentIndex = 0;
+		current = colors[0];
 	}
 	
 	private void initializeColours() {
@@ -67,8 +86,8 @@ public class ColorGenerator {
 	public void next(){
 		currentIndex++;
 		if(currentIndex>=colors.length){
-			current = new Color((float)Math.random(),
-					(float)Math.random(),(float)Math.random());
+			current = new Color(random.nextFloat(),
+					random.nextFloat(),random.nextFloat());
 			
 		}else{
 			current = colors[currentIndex];
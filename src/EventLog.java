@@ -0,0 +1,334 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The event log records what happens in the games (puzzles, selections,
+ * wins, level changes...) as structured events, one JSON object per line,
+ * in a local file rotated once it reaches a size.
+ * Recording an event only claims a slot of a preallocated ring buffer with a
+ * compare-and-set and stores a few longs in it, without locks, allocation or
+ * formatting. A background thread formats the events in batches and writes
+ * them to the file. When the writer falls behind and the buffer is full, new
+ * events are dropped and counted rather than blocking the game.
+ *
+ */
+public final class EventLog implements Closeable {
+	// Types of events
+	public static final int PUZZLE = 0;
+	public static final int NUMBERS = 1;
+	public static final int GROUP = 2;
+	public static final int REJECTED = 3;
+	public static final int UNDO = 4;
+	public static final int REDO = 5;
+	public static final int RESET = 6;
+	public static final int WIN = 7;
+	public static final int LOSE = 8;
+	public static final int LEVEL = 9;
+	public static final int MODE = 10;
+	public static final int RESTORE = 11;
+
+	/**
+	 * Name of each type of event, and names of its fields (null for an unused field)
+	 */
+	private static final String[] NAMES = {"puzzle", "numbers", "group", "rejected", "undo", "redo",
+			"reset", "win", "lose", "level", "mode", "restore"};
+	private static final String[][] FIELDS = {
+			{"goal", "tiles", "level", "solutions"},
+			null,
+			{"tile", "length", "sum", "clicked"},
+			{"tile", "length", null, null},
+			{"tile", "length", "sum", null},
+			{"tile", "length", "sum", null},
+			{"resets", "sum", null, null},
+			{"millis", "level", "resets", "groups"},
+			{"millis", "sum", "goal", "resets"},
+			{"from", "to", null, null},
+			{"arcade", "level", null, null},
+			{"goal", "tiles", "clicked", "millis"}};
+	/**
+	 * Numbers packed in each long of a NUMBERS event, one byte each
+	 */
+	public static final int NUMBERS_PER_FIELD = 8;
+
+	public static final int DEFAULT_CAPACITY = 1 << 13;
+	public static final long DEFAULT_FILE_SIZE = 8L << 20;
+	public static final int DEFAULT_KEPT_FILES = 3;
+
+	// Longs per slot: time, type and game, four fields
+	private static final int SLOT_SIZE = 6;
+	private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+	private final long[] slots;
+	// Sequence published in each slot, read by the writer before the slot
+	private final AtomicLongArray published;
+	private final int mask;
+	// Next sequence to claim, and next sequence to write
+	private final AtomicLong head = new AtomicLong();
+	private volatile long tail;
+	private final AtomicLong dropped = new AtomicLong();
+	// Dropped events already reported in the file, on the writer thread
+	private long reported;
+
+	private final Path file;
+	private final long maxFileSize;
+	private final int keptFiles;
+	private final long baseMillis = System.currentTimeMillis();
+	private final long baseNanos = System.nanoTime();
+	private final Thread writer;
+	private volatile boolean closed;
+	private FileChannel channel;
+	private long fileSize;
+	private final StringBuilder line = new StringBuilder(256);
+	private ByteBuffer batch = ByteBuffer.allocate(1 << 16);
+
+	/**
+	 * Constructor with the default capacity and rotation
+	 * @param file The file of the log.
+	 * @throws IOException if the file can not be opened.
+	 */
+	public EventLog(Path file) throws IOException {
+		this(file, DEFAULT_CAPACITY, DEFAULT_FILE_SIZE, DEFAULT_KEPT_FILES);
+	}
+
+	/**
+	 * Constructor
+	 * @param file The file of the log.
+	 * @param capacity The number of events the buffer holds, a power of two.
+	 * @param maxFileSize The size of the file beyond which it is rotated.
+	 * @param keptFiles The number of rotated files kept (file.1 being the latest).
+	 * @throws IOException if the file can not be opened.
+	 */
+	public EventLog(Path file, int capacity, long maxFileSize, int keptFiles) throws IOException {
+		if(file == null)
+			throw new IllegalArgumentException("Should provide a valid Path!");
+		if(capacity < 2 || Integer.bitCount(capacity) != 1)
+			throw new IllegalArgumentException("The capacity must be a power of two: " + capacity);
+		this.slots = new long[capacity * SLOT_SIZE];
+		this.published = new AtomicLongArray(capacity);
+		for(int i = 0; i < capacity; ++i)
+			published.set(i, -1);
+		this.mask = capacity - 1;
+		this.file = file;
+		this.maxFileSize = maxFileSize;
+		this.keptFiles = keptFiles;
+		openFile();
+		this.writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeLoop();
+			}
+		}, "event-log");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Records an event. The call never blocks: the event is dropped if the
+	 * buffer is full.
+	 * @param type The type of the event.
+	 * @param game The number of the game of the event.
+	 * @param a The first field of the event.
+	 * @param b The second field.
+	 * @param c The third field.
+	 * @param d The fourth field.
+	 */
+	public void record(int type, int game, long a, long b, long c, long d) {
+		long time = System.nanoTime();
+		long sequence;
+		do {
+			sequence = head.get();
+			if(sequence - tail > mask) {
+				dropped.incrementAndGet();
+				return;
+			}
+		} while(!head.compareAndSet(sequence, sequence + 1));
+		int index = (int) sequence & mask;
+		int slot = index * SLOT_SIZE;
+		slots[slot] = time;
+		slots[slot + 1] = ((long) game << 8) | type;
+		slots[slot + 2] = a;
+		slots[slot + 3] = b;
+		slots[slot + 4] = c;
+		slots[slot + 5] = d;
+		// Publishes the slot to the writer
+		published.lazySet(index, sequence);
+	}
+
+	/**
+	 * Records the numbers of a puzzle, in NUMBERS events of
+	 * 3 x {@link #NUMBERS_PER_FIELD} numbers
+	 * @param game The number of the game.
+	 * @param numbers The numbers, between 1 and 99.
+	 */
+	public void recordNumbers(int game, int[] numbers) {
+		for(int offset = 0; offset < numbers.length; offset += 3 * NUMBERS_PER_FIELD)
+			record(NUMBERS, game, offset, pack(numbers, offset),
+					pack(numbers, offset + NUMBERS_PER_FIELD), pack(numbers, offset + 2 * NUMBERS_PER_FIELD));
+	}
+
+	private static long pack(int[] numbers, int offset) {
+		long packed = 0;
+		for(int i = Math.min(offset + NUMBERS_PER_FIELD, numbers.length) - 1; i >= offset; --i)
+			packed = (packed << 8) | numbers[i];
+		return packed;
+	}
+
+	/**
+	 * @return the number of events dropped so far because the buffer was full
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Writes the events recorded so far and closes the file
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		LockSupport.unpark(writer);
+		try {
+			writer.join(TimeUnit.SECONDS.toMillis(5));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Writes the events in batches until the log is closed, on the writer thread
+	 */
+	private void writeLoop() {
+		try {
+			while(true) {
+				boolean last = closed;
+				if(!writeBatch() && !last)
+					LockSupport.parkNanos(IDLE_NANOS);
+				else if(last) {
+					// Every event recorded before the log was closed is written
+					while(writeBatch())
+						;
+					break;
+				}
+			}
+		} catch (IOException e) {
+			System.err.println("Could not write the event log " + file + ": " + e.getMessage());
+		} finally {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// Nothing more can be written
+			}
+		}
+	}
+
+	/**
+	 * Formats the published events and writes them
+	 * @return True if events were written.
+	 */
+	private boolean writeBatch() throws IOException {
+		long sequence = tail;
+		// At most one buffer of events per batch
+		long end = sequence + mask + 1;
+		batch.clear();
+		while(sequence < end && published.get((int) sequence & mask) == sequence) {
+			format((int) sequence & mask);
+			// The slot is free once formatted
+			tail = ++sequence;
+		}
+		long lost = dropped.get() - reported;
+		if(lost > 0) {
+			reported += lost;
+			line.setLength(0);
+			line.append("{\"ts\":").append(baseMillis + (System.nanoTime() - baseNanos) / 1000000)
+					.append(",\"event\":\"dropped\",\"count\":").append(lost).append("}\n");
+			append(line);
+		}
+		if(batch.position() == 0)
+			return false;
+		batch.flip();
+		if(fileSize + batch.remaining() > maxFileSize && fileSize > 0)
+			rotate();
+		while(batch.hasRemaining())
+			fileSize += channel.write(batch);
+		return true;
+	}
+
+	/**
+	 * Formats an event as a line of JSON in the batch
+	 */
+	private void format(int index) {
+		int slot = index * SLOT_SIZE;
+		int type = (int) slots[slot + 1] & 0xFF;
+		line.setLength(0);
+		line.append("{\"ts\":").append(baseMillis + (slots[slot] - baseNanos) / 1000000)
+				.append(",\"ns\":").append(slots[slot] - baseNanos)
+				.append(",\"event\":\"").append(NAMES[type])
+				.append("\",\"game\":").append(slots[slot + 1] >>> 8);
+		if(type == NUMBERS) {
+			line.append(",\"offset\":").append(slots[slot + 2]).append(",\"numbers\":[");
+			boolean first = true;
+			for(int field = 3; field < SLOT_SIZE; ++field)
+				for(long packed = slots[slot + field]; packed != 0; packed >>>= 8) {
+					if(!first)
+						line.append(',');
+					line.append(packed & 0xFF);
+					first = false;
+				}
+			line.append(']');
+		}
+		else {
+			String[] fields = FIELDS[type];
+			for(int i = 0; i < fields.length; ++i)
+				if(fields[i] != null)
+					line.append(",\"").append(fields[i]).append("\":").append(slots[slot + 2 + i]);
+		}
+		line.append("}\n");
+		append(line);
+	}
+
+	/**
+	 * Appends a line of ASCII text to the batch
+	 */
+	private void append(CharSequence text) {
+		if(batch.remaining() < text.length()) {
+			ByteBuffer larger = ByteBuffer.allocate(2 * batch.capacity() + text.length());
+			batch.flip();
+			larger.put(batch);
+			batch = larger;
+		}
+		for(int i = 0; i < text.length(); ++i)
+			batch.put((byte) text.charAt(i));
+	}
+
+	private void openFile() throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		fileSize = channel.size();
+	}
+
+	/**
+	 * Moves the file to file.1, the previous file.1 to file.2, and so on
+	 */
+	private void rotate() throws IOException {
+		channel.close();
+		for(int i = keptFiles - 1; i >= 1; --i) {
+			Path older = file.resolveSibling(file.getFileName() + "." + i);
+			if(Files.exists(older))
+				Files.move(older, file.resolveSibling(file.getFileName() + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+		}
+		if(keptFiles > 0)
+			Files.move(file, file.resolveSibling(file.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+		else
+			Files.delete(file);
+		openFile();
+	}
+}
@@ -0,0 +1,61 @@
+/**
+ * The actions a player can take on a game. Both the headless
+ * {@link GameEngine} and the {@link GameModel} of the user interface accept
+ * them, so recorded sessions (see {@link GameReplay}) can be replayed on
+ * either.
+ *
+ */
+public interface GameActions {
+	/**
+	 * Selects a single tile
+	 * @param position The position of the tile.
+	 * @return True if the selection was accepted.
+	 */
+	boolean clickTile(int position);
+
+	/**
+	 * Selects a tile and the tile that follows it as a pair
+	 * @param position The position of the first tile of the pair.
+	 * @return True if the selection was accepted.
+	 */
+	boolean selectPair(int position);
+
+	/**
+	 * Resets the groups of the user
+	 * @return True if the game was reset.
+	 */
+	boolean resetGame();
+
+	/**
+	 * Undoes the latest selection of a tile or pair
+	 * @return True if a selection was undone.
+	 */
+	boolean undo();
+
+	/**
+	 * Redoes the latest undone selection
+	 * @return True if a selection was redone.
+	 */
+	boolean redo();
+
+	/**
+	 * Creates a new game, once the current one is won in arcade mode
+	 * @return True if a new game was created.
+	 */
+	boolean nextGame();
+
+	/**
+	 * Creates a new game in the current mode and level, unconditionally
+	 */
+	void newGame();
+
+	/**
+	 * Enables or disables arcade mode
+	 */
+	void arcadeGame();
+
+	/**
+	 * Restarts the arcade mode from the first level
+	 */
+	void restartGame();
+}
@@ -0,0 +1,122 @@
+import java.util.Arrays;
+
+/**
+ * The game clock measures the time spent on the current game with
+ * {@link System#nanoTime()}, so it does not drift when the event dispatch
+ * thread is late, and can be paused and resumed. It also keeps the split
+ * time of every level won in an arcade run.
+ * The clock is owned by the {@link GameModel} and can be read from any thread.
+ *
+ */
+public final class GameClock {
+	private static final long NANOS_PER_MILLI = 1000000L;
+
+	// Time accumulated before the current start, and the start, when running
+	private long accumulated;
+	private long startedAt;
+	private boolean running;
+	/**
+	 * Time of each level of the arcade run, indexed by level, -1 if not won
+	 */
+	private final long[] splits = new long[GameEngine.MAX_LEVEL + 1];
+
+	/**
+	 * Constructor for a stopped clock
+	 */
+	public GameClock() {
+		Arrays.fill(splits, -1);
+	}
+
+	/**
+	 * Restarts the clock from zero
+	 */
+	public synchronized void restart() {
+		restart(0);
+	}
+
+	/**
+	 * Restarts the clock from an elapsed time (to resume a saved game)
+	 * @param elapsedMillis The time already spent on the game, in milliseconds.
+	 */
+	public synchronized void restart(long elapsedMillis) {
+		accumulated = elapsedMillis * NANOS_PER_MILLI;
+		startedAt = System.nanoTime();
+		running = true;
+	}
+
+	/**
+	 * Pauses the clock. Pausing a paused clock does nothing.
+	 */
+	public synchronized void pause() {
+		if(!running)
+			return;
+		accumulated += System.nanoTime() - startedAt;
+		running = false;
+	}
+
+	/**
+	 * Resumes a paused clock. Resuming a running clock does nothing.
+	 */
+	public synchronized void resume() {
+		if(running)
+			return;
+		startedAt = System.nanoTime();
+		running = true;
+	}
+
+	/**
+	 * @return whether the clock is running
+	 */
+	public synchronized boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * @return the time spent on the game, in nanoseconds
+	 */
+	public synchronized long getElapsedNanos() {
+		return running ? accumulated + System.nanoTime() - startedAt : accumulated;
+	}
+
+	/**
+	 * @return the time spent on the game, in milliseconds
+	 */
+	public long getElapsedMillis() {
+		return getElapsedNanos() / NANOS_PER_MILLI;
+	}
+
+	/**
+	 * Records the time of the game as the split time of a level
+	 * @param level The arcade level won.
+	 */
+	public synchronized void split(int level) {
+		splits[level] = getElapsedNanos();
+	}
+
+	/**
+	 * Forgets the split times, at the start of an arcade run
+	 */
+	public synchronized void clearSplits() {
+		Arrays.fill(splits, -1);
+	}
+
+	/**
+	 * @param level The arcade level.
+	 * @return the time spent to win the level in the current run, in
+	 * milliseconds, or -1 if it was not won
+	 */
+	public synchronized long getSplitMillis(int level) {
+		return (splits[level] < 0) ? -1 : splits[level] / NANOS_PER_MILLI;
+	}
+
+	/**
+	 * @return the total time of the levels won in the current run, in milliseconds
+	 */
+	public synchronized long getRunMillis() {
+		long total = 0;
+		for(long split : splits)
+			if(split > 0)
+				total += split;
+		return total / NANOS_PER_MILLI;
+	}
+}
@@ -0,0 +1,553 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The game engine holds the rules and the state of a game, without any
+ * dependency on Swing or AWT. The digits are stored in a primitive array
+ * and the groups selected by the user are stored as packed int ranges
+ * (see {@link Group}), so games can be played headlessly by simulations
+ * and bots. The {@link GameModel} wraps an engine for the user interface.
+ * The puzzles are drawn with a random generator seeded once per engine, so
+ * an engine created with the same seed and source plays the same games.
+ * Every selection can be undone and redone: the engine keeps a history of
+ * three ints per selection (the new group and the previous groups of its
+ * tiles), so a step takes constant time and memory whatever the size of
+ * the board.
+ *
+ */
+public class GameEngine implements GameActions {
+	/**
+	 * Highest level that can be reached in arcade mode
+	 */
+	public static final int MAX_LEVEL = 20;
+
+	// Puzzle
+	private PuzzleSource puzzleSource;
+	private final long seed;
+	private final Random random;
+	private Puzzle puzzle;
+	private int goal;
+	private byte[] digits = new byte[0];
+	private int numberOfTiles;
+	// User selection: the group id of each tile is only valid when the stamp
+	// of the tile is the current selection, so clearing the selection is O(1)
+	private int[] groupIdOf = new int[0];
+	private int[] groupStamp = new int[0];
+	private int selection;
+	// Packed group of each group id, or the next free id for a free slot
+	private int[] groups = new int[0];
+	private int freeGroupId;
+	private int unusedGroupId;
+	private int groupCount;
+	private int clickedCounter;
+	private int currentSum;
+	// History of the selections, three ints per step: the new group and the
+	// previous groups of its tiles. The steps before the cursor are done, the
+	// steps from the cursor to the size can be redone.
+	private int[] history = new int[3 * 16];
+	private int historyCursor;
+	private int historySize;
+	// Game status
+	private boolean arcadeEnabled = false;
+	private int level = 1;
+	private boolean gameOver;
+	private boolean gameWon;
+	private int resetCounter;
+
+	/**
+	 * Constructor for the GameEngine, generating new puzzles on demand
+	 */
+	public GameEngine() {
+		this(new PuzzleGenerator());
+	}
+
+	/**
+	 * Constructor for the GameEngine
+	 * @param puzzleSource The source of the puzzles of new games.
+	 */
+	public GameEngine(PuzzleSource puzzleSource) {
+		this(puzzleSource, ThreadLocalRandom.current().nextLong());
+	}
+
+	/**
+	 * Constructor for the GameEngine
+	 * @param puzzleSource The source of the puzzles of new games.
+	 * @param seed The seed of the random generator drawing the puzzles.
+	 */
+	public GameEngine(PuzzleSource puzzleSource, long seed) {
+		setPuzzleSource(puzzleSource);
+		this.seed = seed;
+		this.random = new Random(seed);
+		newGame();
+	}
+
+	/**
+	 * Sets the source of the puzzles of the next games
+	 * @param puzzleSource The source of the puzzles.
+	 */
+	public void setPuzzleSource(PuzzleSource puzzleSource) {
+		if(puzzleSource == null)
+			throw new IllegalArgumentException("Should provide a valid PuzzleSource!");
+		this.puzzleSource = puzzleSource;
+	}
+
+	/**
+	 * Generates a new puzzle for the current mode and level and clears
+	 * the selection of the user.
+	 */
+	@Override
+	public void newGame() {
+		loadPuzzle(puzzleSource.nextPuzzle(random, arcadeEnabled, level));
+	}
+
+	/**
+	 * Sets the mode and level of the next games, without starting a new one
+	 * (to restore the state of a recorded or saved session).
+	 * @param arcade Whether arcade mode is enabled.
+	 * @param level The arcade level, between 1 and {@link #MAX_LEVEL}.
+	 */
+	public void setMode(boolean arcade, int level) {
+		if(level < 1 || level > MAX_LEVEL)
+			throw new IllegalArgumentException("Level must be between 1 and " + MAX_LEVEL + ": " + level);
+		this.arcadeEnabled = arcade;
+		this.level = level;
+	}
+
+	/**
+	 * Starts a game on a puzzle and clears the selection of the user.
+	 * @param puzzle The puzzle to play.
+	 */
+	public void loadPuzzle(Puzzle puzzle) {
+		this.puzzle = puzzle;
+		this.goal = puzzle.getGoal();
+		this.numberOfTiles = puzzle.getDigitCount();
+		if(digits.length < numberOfTiles)
+			digits = new byte[numberOfTiles];
+		puzzle.copyDigits(digits);
+		if(groupIdOf.length < numberOfTiles) {
+			groupIdOf = new int[numberOfTiles];
+			groupStamp = new int[numberOfTiles];
+			// There are never more groups than tiles
+			groups = new int[numberOfTiles];
+			selection = 0;
+		}
+		this.resetCounter = 0;
+		this.gameOver = false;
+		this.gameWon = false;
+		clearSelection();
+	}
+
+	/**
+	 * Restores a saved game: starts a game on its puzzle with the saved
+	 * groups of the user. The mode and level are restored by
+	 * {@link #setMode(boolean, int)}; a won game does not raise the level
+	 * again. The history of the restored selections is empty.
+	 * @param puzzle The puzzle of the game.
+	 * @param savedGroups The packed groups of the user, in any order.
+	 * @param resetCounter The number of resets in the game.
+	 */
+	public void restoreGame(Puzzle puzzle, int[] savedGroups, int resetCounter) {
+		loadPuzzle(puzzle);
+		for(int group : savedGroups) {
+			int start = Group.start(group);
+			if(group == Group.EMPTY || start + Group.length(group) > numberOfTiles)
+				throw new IllegalArgumentException("Group out of the puzzle: " + group);
+			for(int i = start; i < start + Group.length(group); ++i)
+				if(groupIdAt(i) >= 0)
+					throw new IllegalArgumentException("Tile " + i + " is in two groups");
+			addGroup(group);
+		}
+		this.resetCounter = resetCounter;
+		this.gameOver = clickedCounter == numberOfTiles;
+		this.gameWon = gameOver && currentSum == goal;
+	}
+
+	/**
+	 * Create a new game. In arcade mode, the current game must be won first.
+	 * @return True if a new game was generated.
+	 */
+	@Override
+	public boolean nextGame() {
+		if(this.arcadeEnabled && !this.gameWon)
+			return false;
+		newGame();
+		return true;
+	}
+
+	/**
+	 * Reset the groups of the user. A game that is over can not be reset.
+	 * @return True if the game was reset.
+	 */
+	@Override
+	public boolean resetGame() {
+		if(this.gameOver)
+			return false;
+		++this.resetCounter;
+		clearSelection();
+		return true;
+	}
+
+	/**
+	 * Enables or disables arcade mode and starts a new game in the new mode
+	 */
+	@Override
+	public void arcadeGame() {
+		this.arcadeEnabled = !this.arcadeEnabled;
+		newGame();
+	}
+
+	/**
+	 * Restarts the arcade mode from the first level
+	 */
+	@Override
+	public void restartGame() {
+		this.level = 1;
+		newGame();
+	}
+
+	/**
+	 * Selects a single tile. The tile is removed from its previous group
+	 * and forms a new group on its own. A game that is over accepts no
+	 * selection.
+	 * @param position The position of the tile.
+	 * @return True if the selection was accepted.
+	 */
+	@Override
+	public boolean clickTile(int position) {
+		if(this.gameOver || position < 0 || position >= numberOfTiles)
+			return false;
+		pushStep(Group.of(position, 1), groupAt(position), Group.EMPTY);
+		select(Group.of(position, 1));
+		return true;
+	}
+
+	/**
+	 * Selects a tile and the tile that follows it as a pair. Both tiles
+	 * are removed from their previous groups and form a new group. A game
+	 * that is over accepts no selection.
+	 * @param position The position of the first tile of the pair.
+	 * @return True if the selection was accepted.
+	 */
+	@Override
+	public boolean selectPair(int position) {
+		if(this.gameOver || position < 0 || position + 1 >= numberOfTiles)
+			return false;
+		int first = groupAt(position);
+		int second = groupAt(position + 1);
+		// Both tiles may already be the same pair
+		pushStep(Group.of(position, 2), first, (second == first) ? Group.EMPTY : second);
+		select(Group.of(position, 2));
+		return true;
+	}
+
+	/**
+	 * Removes the tiles of a new group from their previous groups and adds
+	 * the new group
+	 * @param group The packed group.
+	 */
+	private void select(int group) {
+		int start = Group.start(group);
+		for(int i = start; i < start + Group.length(group); ++i)
+			removeTileFromPreviousGroup(i);
+		addGroup(group);
+		checkIfGameOver();
+	}
+
+	/**
+	 * Adds a selection to the history, forgetting the steps that could be redone
+	 * @param group The new group.
+	 * @param first The previous group of its first tile.
+	 * @param second The previous group of its second tile, if different.
+	 */
+	private void pushStep(int group, int first, int second) {
+		if(3 * historyCursor + 3 > history.length)
+			history = Arrays.copyOf(history, 2 * history.length);
+		history[3 * historyCursor] = group;
+		history[3 * historyCursor + 1] = first;
+		history[3 * historyCursor + 2] = second;
+		historySize = ++historyCursor;
+	}
+
+	/**
+	 * Undoes the latest selection. A game that is over can not be undone.
+	 * @return True if a selection was undone.
+	 */
+	@Override
+	public boolean undo() {
+		if(this.gameOver || historyCursor == 0)
+			return false;
+		--historyCursor;
+		int group = history[3 * historyCursor];
+		int start = Group.start(group);
+		for(int i = start; i < start + Group.length(group); ++i)
+			removeTileFromPreviousGroup(i);
+		// The previous groups get their tiles back
+		for(int k = 1; k <= 2; ++k) {
+			int previous = history[3 * historyCursor + k];
+			if(previous == Group.EMPTY)
+				continue;
+			int first = Group.start(previous);
+			for(int i = first; i < first + Group.length(previous); ++i)
+				if(!Group.contains(group, i))
+					removeTileFromPreviousGroup(i);
+			addGroup(previous);
+		}
+		return true;
+	}
+
+	/**
+	 * Redoes the latest undone selection
+	 * @return True if a selection was redone.
+	 */
+	@Override
+	public boolean redo() {
+		if(this.gameOver || historyCursor == historySize)
+			return false;
+		select(history[3 * historyCursor++]);
+		return true;
+	}
+
+	/**
+	 * @return the group removed by the next undo, or {@link Group#EMPTY} if
+	 * there is nothing to undo
+	 */
+	public int getUndoGroup() {
+		return (historyCursor == 0) ? Group.EMPTY : history[3 * historyCursor - 3];
+	}
+
+	/**
+	 * @return the group added by the next redo, or {@link Group#EMPTY} if
+	 * there is nothing to redo
+	 */
+	public int getRedoGroup() {
+		return (historyCursor == historySize) ? Group.EMPTY : history[3 * historyCursor];
+	}
+
+	/**
+	 * Gets the group of a tile
+	 * @param position The position of the tile.
+	 * @return The packed group, or {@link Group#EMPTY} if the tile is not in a group.
+	 */
+	public int groupAt(int position) {
+		int id = groupIdAt(position);
+		return (id < 0) ? Group.EMPTY : groups[id];
+	}
+
+	/**
+	 * Gets the id of the group of a tile. The id of a group does not change
+	 * while the group exists, even when one tile of a pair leaves it, and is
+	 * reused once the group is empty.
+	 * @param position The position of the tile.
+	 * @return The id of the group, between 0 and the number of tiles, or -1
+	 * if the tile is not in a group.
+	 */
+	public int groupIdAt(int position) {
+		return (groupStamp[position] == selection) ? groupIdOf[position] : -1;
+	}
+
+	/**
+	 * Gets a group from its id
+	 * @param id The id of the group.
+	 * @return The packed group.
+	 */
+	public int getGroup(int id) {
+		return groups[id];
+	}
+
+	/**
+	 * Removes a tile from its previous group. The other tile of a pair stays
+	 * alone in the group, and the current sum is updated accordingly.
+	 * @param position The position of the tile to remove.
+	 */
+	private void removeTileFromPreviousGroup(int position) {
+		int id = groupIdAt(position);
+		if(id < 0)
+			return;
+		int group = groups[id];
+		currentSum -= Group.getSum(group, digits);
+		groupIdOf[position] = -1;
+		int remaining = Group.removeTile(group, position);
+		if(remaining == Group.EMPTY) {
+			// The slot of the group goes back to the free list
+			groups[id] = freeGroupId;
+			freeGroupId = id;
+			--groupCount;
+		}
+		else {
+			groups[id] = remaining;
+			currentSum += Group.getSum(remaining, digits);
+		}
+		// The tile is put back in a group right after, unless undone
+		--clickedCounter;
+	}
+
+	/**
+	 * Adds a group to the groups of the user
+	 * @param group The packed group.
+	 */
+	private void addGroup(int group) {
+		// Take a free slot, or the first slot never used in this selection
+		int id;
+		if(freeGroupId >= 0) {
+			id = freeGroupId;
+			freeGroupId = groups[id];
+		}
+		else
+			id = unusedGroupId++;
+		groups[id] = group;
+		int start = Group.start(group);
+		for(int i = start; i < start + Group.length(group); ++i) {
+			groupIdOf[i] = id;
+			groupStamp[i] = selection;
+		}
+		++groupCount;
+		clickedCounter += Group.length(group);
+		currentSum += Group.getSum(group, digits);
+	}
+
+	/**
+	 * Checks if the game is over. The game is over once every tile has been
+	 * clicked, and won if the current sum is then equal to the goal.
+	 * Winning in arcade mode raises the level.
+	 */
+	private void checkIfGameOver() {
+		if(this.clickedCounter != this.numberOfTiles)
+			return;
+		this.gameOver = true;
+		if(this.currentSum == this.goal) {
+			this.gameWon = true;
+			if(this.arcadeEnabled && this.level < MAX_LEVEL)
+				++this.level;
+		}
+	}
+
+	/**
+	 * Clears the groups and the clicked tiles of the user
+	 */
+	private void clearSelection() {
+		// Moving to a new selection invalidates the group of every tile
+		if(++selection == 0) {
+			Arrays.fill(groupStamp, -1);
+			selection = 0;
+		}
+		freeGroupId = -1;
+		unusedGroupId = 0;
+		groupCount = 0;
+		historyCursor = 0;
+		historySize = 0;
+		this.clickedCounter = 0;
+		this.currentSum = 0;
+	}
+
+	/**
+	 * @return the seed of the random generator drawing the puzzles
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * @return the puzzle being played
+	 */
+	public Puzzle getPuzzle() {
+		return puzzle;
+	}
+
+	/**
+	 * @return the goal of the puzzle
+	 */
+	public int getGoal() {
+		return goal;
+	}
+
+	/**
+	 * @return the number of tiles (digits) of the puzzle
+	 */
+	public int getNumberOfTiles() {
+		return numberOfTiles;
+	}
+
+	/**
+	 * @param position The position of the tile.
+	 * @return the digit of the tile
+	 */
+	public int getDigit(int position) {
+		return digits[position];
+	}
+
+	/**
+	 * @return the digits of the puzzle as a string
+	 */
+	public String getNumberSuite() {
+		StringBuilder sb = new StringBuilder(numberOfTiles);
+		for(int i = 0; i < numberOfTiles; ++i)
+			sb.append((char) ('0' + digits[i]));
+		return sb.toString();
+	}
+
+	/**
+	 * @return the number of groups selected by the user
+	 */
+	public int getGroupCount() {
+		return groupCount;
+	}
+
+	/**
+	 * @param position The position of the tile.
+	 * @return whether the tile has been clicked
+	 */
+	public boolean isClicked(int position) {
+		// A clicked tile always stays in a group until the game is reset
+		return groupAt(position) != Group.EMPTY;
+	}
+
+	/**
+	 * @return the number of tiles clicked by the user
+	 */
+	public int getClickedCounter() {
+		return clickedCounter;
+	}
+
+	/**
+	 * @return the sum of the groups selected by the user
+	 */
+	public int getCurrentSum() {
+		return currentSum;
+	}
+
+	/**
+	 * @return whether arcade mode is enabled
+	 */
+	public boolean isArcadeEnabled() {
+		return arcadeEnabled;
+	}
+
+	/**
+	 * @return the current arcade level
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * @return whether every tile has been clicked
+	 */
+	public boolean isGameOver() {
+		return gameOver;
+	}
+
+	/**
+	 * @return whether the game has been won
+	 */
+	public boolean isGameWon() {
+		return gameWon;
+	}
+
+	/**
+	 * @return the number of resets in the current game
+	 */
+	public int getResetCounter() {
+		return resetCounter;
+	}
+}
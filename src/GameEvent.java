@@ -0,0 +1,97 @@
+/**
+ * This class represents a modification of the {@link GameModel}, sent to the
+ * listeners of the model through its {@link GameEventBus}. Besides the type
+ * of the modification, it carries the current sum before and after the
+ * modification and the range of tiles whose group changed.
+ *
+ */
+public final class GameEvent {
+	private final GameModel.MessCode code;
+	private final int oldSum;
+	private final int newSum;
+	private final int firstTile;
+	private final int lastTile;
+
+	/**
+	 * Constructor
+	 * @param code The type of modification.
+	 * @param oldSum The current sum before the modification.
+	 * @param newSum The current sum after the modification.
+	 * @param firstTile The first tile whose group changed, or -1 if none.
+	 * @param lastTile The last tile whose group changed, or -1 if none.
+	 */
+	public GameEvent(GameModel.MessCode code, int oldSum, int newSum, int firstTile, int lastTile) {
+		if(code == null)
+			throw new IllegalArgumentException("Should provide a valid MessCode!");
+		this.code = code;
+		this.oldSum = oldSum;
+		this.newSum = newSum;
+		this.firstTile = firstTile;
+		this.lastTile = lastTile;
+	}
+
+	/**
+	 * Creates an event without any tile range
+	 * @param code The type of modification.
+	 * @param sum The current sum after the modification.
+	 * @return The event.
+	 */
+	public static GameEvent of(GameModel.MessCode code, int sum) {
+		return new GameEvent(code, sum, sum, -1, -1);
+	}
+
+	/**
+	 * Merges this event with the event of the same type that followed it
+	 * @param later The later event.
+	 * @return An event going from the old sum of this event to the new sum
+	 * of the later one, over both tile ranges.
+	 */
+	public GameEvent merge(GameEvent later) {
+		if(later.firstTile < 0)
+			return new GameEvent(code, oldSum, later.newSum, firstTile, lastTile);
+		if(firstTile < 0)
+			return new GameEvent(code, oldSum, later.newSum, later.firstTile, later.lastTile);
+		return new GameEvent(code, oldSum, later.newSum,
+				Math.min(firstTile, later.firstTile), Math.max(lastTile, later.lastTile));
+	}
+
+	/**
+	 * @return the type of modification
+	 */
+	public GameModel.MessCode getCode() {
+		return code;
+	}
+
+	/**
+	 * @return the current sum before the modification
+	 */
+	public int getOldSum() {
+		return oldSum;
+	}
+
+	/**
+	 * @return the current sum after the modification
+	 */
+	public int getNewSum() {
+		return newSum;
+	}
+
+	/**
+	 * @return the first tile whose group changed, or -1 if none
+	 */
+	public int getFirstTile() {
+		return firstTile;
+	}
+
+	/**
+	 * @return the last tile whose group changed, or -1 if none
+	 */
+	public int getLastTile() {
+		return lastTile;
+	}
+
+	@Override
+	public String toString() {
+		return code + "[sum " + oldSum + " -> " + newSum + ", tiles " + firstTile + ".." + lastTile + "]";
+	}
+}
@@ -0,0 +1,171 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * The event bus delivers the events of the {@link GameModel} to the listeners
+ * subscribed to their type. Events are queued and delivered together by a
+ * single task of the dispatcher (by default, on the event dispatch thread),
+ * and consecutive SUMCHANGED events waiting in the queue are merged into one,
+ * so a burst of selections only updates the view once. A new board (NEW,
+ * ARCADE or RESTART event) drops the SUMCHANGED events still waiting, whose
+ * tiles may not exist anymore.
+ *
+ */
+public class GameEventBus {
+	private final Executor dispatcher;
+	/**
+	 * Listeners of each type of event, indexed by the ordinal of the MessCode
+	 */
+	private final List<List<GameListener>> listeners = new ArrayList<List<GameListener>>();
+	private final Runnable flush = new Runnable() {
+		@Override
+		public void run() {
+			flush();
+		}
+	};
+	private List<GameEvent> pending = new ArrayList<GameEvent>();
+	private boolean scheduled;
+	/**
+	 * Measures the delivery of the events, or null
+	 */
+	private volatile GameMetrics metrics;
+
+	/**
+	 * Constructor delivering the events on the event dispatch thread
+	 */
+	public GameEventBus() {
+		this(new Executor() {
+			@Override
+			public void execute(Runnable task) {
+				SwingUtilities.invokeLater(task);
+			}
+		});
+	}
+
+	/**
+	 * Constructor
+	 * @param dispatcher The executor running the delivery of the events.
+	 */
+	public GameEventBus(Executor dispatcher) {
+		if(dispatcher == null)
+			throw new IllegalArgumentException("Should provide a valid dispatcher!");
+		this.dispatcher = dispatcher;
+		for(int i = 0; i < GameModel.MessCode.values().length; ++i)
+			listeners.add(new CopyOnWriteArrayList<GameListener>());
+	}
+
+	/**
+	 * Creates a bus delivering the events on the thread posting them,
+	 * without merging them (for headless games).
+	 * @return The bus.
+	 */
+	public static GameEventBus direct() {
+		return new GameEventBus(new Executor() {
+			@Override
+			public void execute(Runnable task) {
+				task.run();
+			}
+		});
+	}
+
+	/**
+	 * Sets the metrics measuring the delivery of each event to its listeners
+	 * @param metrics The metrics, or null.
+	 */
+	public void setMetrics(GameMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Subscribes a listener to types of events
+	 * @param listener The listener.
+	 * @param codes The types of events to deliver to the listener.
+	 */
+	public void subscribe(GameListener listener, GameModel.MessCode... codes) {
+		if(listener == null)
+			throw new IllegalArgumentException("Should provide a valid GameListener!");
+		for(GameModel.MessCode code : codes) {
+			List<GameListener> list = listeners.get(code.ordinal());
+			if(!list.contains(listener))
+				list.add(listener);
+		}
+	}
+
+	/**
+	 * Unsubscribes a listener from every type of event
+	 * @param listener The listener.
+	 */
+	public void unsubscribe(GameListener listener) {
+		for(List<GameListener> list : listeners)
+			list.remove(listener);
+	}
+
+	/**
+	 * Posts an event, to be delivered by the dispatcher. Events without any
+	 * listener are dropped.
+	 * @param event The event.
+	 */
+	public void post(GameEvent event) {
+		GameModel.MessCode code = event.getCode();
+		boolean newBoard = code == GameModel.MessCode.NEW || code == GameModel.MessCode.ARCADE
+				|| code == GameModel.MessCode.RESTART;
+		boolean listened = !listeners.get(code.ordinal()).isEmpty();
+		if(!listened && !newBoard)
+			return;
+		boolean schedule;
+		synchronized(this) {
+			if(newBoard)
+				dropSumChanges();
+			if(!listened)
+				return;
+			int last = pending.size() - 1;
+			if(code == GameModel.MessCode.SUMCHANGED && last >= 0
+					&& pending.get(last).getCode() == GameModel.MessCode.SUMCHANGED)
+				pending.set(last, pending.get(last).merge(event));
+			else
+				pending.add(event);
+			schedule = !scheduled;
+			scheduled = true;
+		}
+		if(schedule)
+			dispatcher.execute(flush);
+	}
+
+	/**
+	 * Drops the pending SUMCHANGED events, which refer to the tiles of the
+	 * previous board
+	 */
+	private void dropSumChanges() {
+		Iterator<GameEvent> events = pending.iterator();
+		while(events.hasNext())
+			if(events.next().getCode() == GameModel.MessCode.SUMCHANGED)
+				events.remove();
+	}
+
+	/**
+	 * Delivers the pending events to their listeners
+	 */
+	private void flush() {
+		List<GameEvent> events;
+		synchronized(this) {
+			events = pending;
+			// Events posted by the listeners go to a new queue
+			pending = new ArrayList<GameEvent>();
+			scheduled = false;
+		}
+		GameMetrics metrics = this.metrics;
+		for(int i = 0; i < events.size(); ++i) {
+			GameEvent event = events.get(i);
+			long begin = (metrics != null) ? metrics.begin() : 0;
+			for(GameListener listener : listeners.get(event.getCode().ordinal()))
+				listener.gameChanged(event);
+			if(metrics != null)
+				metrics.end(GameMetrics.Probe.DISPATCH, begin);
+		}
+	}
+}
@@ -1,5 +1,16 @@
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import javax.management.JMException;
 import javax.swing.JFrame;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 /**
  * The game frame is the main window of the game. It instantiates the model
@@ -13,6 +24,35 @@ public class GameFrame extends JFrame {
 	 * 
 	 */
 	private static final long serialVersionUID = 2404129435273640727L;
+	/**
+	 * System property selecting the single component board renderer
+	 * ({@code -Dmeansum.board=true}), lighter on large boards
+	 */
+	public static final String BOARD_PROPERTY = "meansum.board";
+	/**
+	 * System property naming the level table loaded at startup
+	 * (levels.txt by default, see {@link LevelCalibrator})
+	 */
+	public static final String LEVELS_PROPERTY = "meansum.levels";
+	/**
+	 * System property naming the file of the saved session
+	 * (session.bin by default, {@code -Dmeansum.session=} to disable saving)
+	 */
+	public static final String SESSION_PROPERTY = "meansum.session";
+	/**
+	 * System property naming the file of the event log
+	 * (meansum-events.log by default, {@code -Dmeansum.log=} to disable logging)
+	 */
+	public static final String LOG_PROPERTY = "meansum.log";
+	/**
+	 * System property naming the file of the leaderboard
+	 * (leaderboard.bin by default, {@code -Dmeansum.leaderboard=} to disable it)
+	 */
+	public static final String LEADERBOARD_PROPERTY = "meansum.leaderboard";
+	/**
+	 * Period of the saves of the session while the player thinks, in milliseconds
+	 */
+	private static final int SAVE_PERIOD = 10000;
 	/**
 	 * Handles both the graphical interface (tiles, labels, buttons, etc.)
 	 * and the user input (mouse events, button clicks, etc.)
@@ -25,12 +65,61 @@ public class GameFrame extends JFrame {
 	 * and builds the game window.
 	 */
 	public GameFrame() {		
+		this(new PuzzleGenerator());
+	}
+	
+	/**
+	 * The constructor instantiates the model and view-controller
+	 * and builds the game window.
+	 * @param puzzleSource The source of the puzzles of the games.
+	 */
+	public GameFrame(PuzzleSource puzzleSource) {
+		this(new GameModel(puzzleSource), null);
+	}
+	
+	/**
+	 * The constructor instantiates the view-controller of a model
+	 * and builds the game window.
+	 * @param gameModel The model of the game.
+	 * @param sessionStore Saves the session after every change, or null.
+	 */
+	public GameFrame(final GameModel gameModel, final SessionStore sessionStore) {
 		// Initialize the UI
 		initUI();
 		
 		// Initialize the view and set it as the main component our window
-		gameViewController = new GameViewController();
+		gameViewController = new GameViewController(gameModel, Boolean.getBoolean(BOARD_PROPERTY));
 		setContentPane(gameViewController);
+		// The clock stops while the window is minimized
+		addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowIconified(WindowEvent e) {
+				gameModel.getClock().pause();
+			}
+
+			@Override
+			public void windowDeiconified(WindowEvent e) {
+				if(!gameModel.isGameOver())
+					gameModel.getClock().resume();
+			}
+		});
+		if(sessionStore != null) {
+			sessionStore.autosave(gameModel);
+			// The clock is saved too while the player thinks
+			new Timer(SAVE_PERIOD, new ActionListener() {
+				@Override
+				public void actionPerformed(ActionEvent e) {
+					sessionStore.save(gameModel);
+				}
+			}).start();
+			addWindowListener(new WindowAdapter() {
+				@Override
+				public void windowClosing(WindowEvent e) {
+					sessionStore.save(gameModel);
+					sessionStore.close();
+				}
+			});
+		}
 	}
 	
 	/**
@@ -43,11 +132,123 @@ public class GameFrame extends JFrame {
 		setDefaultCloseOperation(EXIT_ON_CLOSE);
 	}
 	
+	/**
+	 * Restores the saved session, if there is one
+	 * @param store The store of the session.
+	 * @param model The model receiving the saved game.
+	 */
+	private static void restoreSession(SessionStore store, GameModel model) {
+		try {
+			SessionStore.Session session = store.load();
+			if(session != null)
+				model.restoreGame(session);
+		} catch (IOException | IllegalArgumentException e) {
+			System.err.println("Could not restore the saved session: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Opens the event log of the games, unless disabled
+	 * @return The log, or null.
+	 */
+	private static EventLog openEventLog() {
+		String log = System.getProperty(LOG_PROPERTY, "meansum-events.log");
+		if(log.isEmpty())
+			return null;
+		try {
+			return new EventLog(Paths.get(log));
+		} catch (IOException e) {
+			System.err.println("Could not open the event log " + log + ": " + e.getMessage());
+			return null;
+		}
+	}
+	
+	/**
+	 * Opens the leaderboard of the runs, unless disabled
+	 * @return The leaderboard, or null.
+	 */
+	private static Leaderboard openLeaderboard() {
+		String leaderboard = System.getProperty(LEADERBOARD_PROPERTY, "leaderboard.bin");
+		if(leaderboard.isEmpty())
+			return null;
+		try {
+			return new Leaderboard(Paths.get(leaderboard));
+		} catch (IOException e) {
+			System.err.println("Could not open the leaderboard " + leaderboard + ": " + e.getMessage());
+			return null;
+		}
+	}
+	
+	/**
+	 * Loads the calibrated level table, if there is one
+	 * @return The table, or the default one.
+	 */
+	private static LevelTable loadLevels() {
+		Path file = Paths.get(System.getProperty(LEVELS_PROPERTY, "levels.txt"));
+		if(!Files.exists(file))
+			return LevelTable.DEFAULT;
+		try {
+			return LevelTable.load(file);
+		} catch (IOException e) {
+			System.err.println("Could not load the level table " + file + ": " + e.getMessage());
+			return LevelTable.DEFAULT;
+		}
+	}
+	
+	/**
+	 * Starts the game. Puzzles are drawn from the puzzle bank given as
+	 * first argument if any, and generated otherwise, ahead of time.
+	 * @param args The optional path of a puzzle bank.
+	 */
 	public static void main(String[] args) {
+		LevelTable levels = loadLevels();
+		PuzzleSource source = new PuzzleGenerator(levels);
+		if(args.length > 0) {
+			try {
+				source = PuzzleBank.open(Paths.get(args[0]), levels);
+			} catch (IOException e) {
+				System.err.println("Could not open the puzzle bank " + args[0] + ": " + e.getMessage());
+			}
+		}
+		// Puzzles are prepared in the background so new games start at once
+		PuzzleSource puzzleSource = new PuzzlePrefetcher(source);
+		// The saved session is restored before the window is built
+		final GameModel model = new GameModel(puzzleSource);
+		try {
+			// The latencies and counters of the game can be read from a JMX console
+			model.getMetrics().register();
+		} catch (JMException e) {
+			System.err.println("Could not register the game metrics: " + e.getMessage());
+		}
+		final EventLog eventLog = openEventLog();
+		if(eventLog != null) {
+			model.setEventLog(eventLog);
+			// The events of the last moves are written before the game exits
+			Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					eventLog.close();
+				}
+			}, "event-log-close"));
+		}
+		final Leaderboard leaderboard = openLeaderboard();
+		if(leaderboard != null) {
+			model.setLeaderboard(leaderboard);
+			Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					leaderboard.close();
+				}
+			}, "leaderboard-close"));
+		}
+		String session = System.getProperty(SESSION_PROPERTY, "session.bin");
+		final SessionStore store = session.isEmpty() ? null : new SessionStore(Paths.get(session));
+		if(store != null)
+			restoreSession(store, model);
 		SwingUtilities.invokeLater(new Runnable() {
 			@Override
 			public void run() {
-				GameFrame game = new GameFrame();
+				GameFrame game = new GameFrame(model, store);
 				game.setVisible(true);
 			}
 		});
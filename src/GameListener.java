@@ -0,0 +1,13 @@
+/**
+ * A game listener is notified of the modifications of the {@link GameModel}
+ * it subscribed to through the {@link GameEventBus} of the model.
+ *
+ */
+public interface GameListener {
+	/**
+	 * This method is called when the game model has been modified.
+	 * USE THIS METHOD TO UPDATE THE VIEW IN ACCORDANCE TO THE MODEL STATE.
+	 * @param event The modification.
+	 */
+	void gameChanged(GameEvent event);
+}
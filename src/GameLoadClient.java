@@ -0,0 +1,379 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The load client plays many games at once against a {@link GameServer},
+ * to measure how it behaves under load. Each connection is a player playing
+ * arcade runs with one of the {@link BotStrategies} (resetting a game now
+ * and then) on a local copy of its game, a {@link GameEngine} loaded with
+ * the puzzles sent by the server, and checks that the sums sent by the
+ * server match its copy. A player
+ * waits for the answer to a request before sending the next one. The
+ * connections are spread over a few threads, each with its own selector.
+ * The client reports the throughput and the percentiles of the latency of
+ * the requests.
+ *
+ */
+public class GameLoadClient {
+	/**
+	 * Probability that a player resets its game instead of playing a move
+	 */
+	private static final double RESET_PROBA = 0.01;
+	/**
+	 * Time given to the server to answer the last requests after the end of the test
+	 */
+	private static final long GRACE_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+	private final InetSocketAddress address;
+	private final int connections;
+	private final int threads;
+	private final long durationNanos;
+	private final String strategy;
+	private final long seed;
+
+	/**
+	 * A connected player, owning its copy of the game
+	 */
+	private static final class Player {
+		final SocketChannel channel;
+		final BotStrategy strategy;
+		final Random random;
+		final long seed;
+		final ByteBuffer input = ByteBuffer.allocate(1 << 12);
+		final ByteBuffer output = ByteBuffer.allocate(GameProtocol.REQUEST_SIZE);
+		GameEngine game;
+		// Puzzle of the latest GAME message, drawn by the copy of the game
+		Puzzle puzzle;
+		boolean arcade;
+		byte action;
+		int position;
+		long sentAt;
+		boolean done;
+
+		Player(SocketChannel channel, BotStrategy strategy, long seed) {
+			this.channel = channel;
+			this.strategy = strategy;
+			this.random = new Random(seed);
+			this.seed = seed;
+		}
+	}
+
+	/**
+	 * The results of a thread of the client
+	 */
+	private static final class Results {
+		final LatencyHistogram latencies = new LatencyHistogram();
+		long requests;
+		long games;
+		long wins;
+		long mismatches;
+		long errors;
+
+		void add(Results other) {
+			latencies.add(other.latencies);
+			requests += other.requests;
+			games += other.games;
+			wins += other.wins;
+			mismatches += other.mismatches;
+			errors += other.errors;
+		}
+	}
+
+	/**
+	 * Constructor
+	 * @param address The address of the server.
+	 * @param connections The number of players.
+	 * @param threads The number of threads of the client.
+	 * @param seconds The duration of the test, in seconds.
+	 * @param strategy The name of the strategy of the players (see {@link BotStrategies}).
+	 * @param seed The seed of the strategies.
+	 */
+	public GameLoadClient(InetSocketAddress address, int connections, int threads, double seconds, String strategy, long seed) {
+		if(address == null)
+			throw new IllegalArgumentException("Should provide a valid InetSocketAddress!");
+		if(connections < 1 || threads < 1)
+			throw new IllegalArgumentException("Should run at least one player on one thread");
+		// Fail before connecting if the strategy is unknown
+		BotStrategies.create(strategy, new Random());
+		this.address = address;
+		this.connections = connections;
+		this.threads = Math.min(threads, connections);
+		this.durationNanos = (long) (seconds * 1e9);
+		this.strategy = strategy;
+		this.seed = seed;
+	}
+
+	/**
+	 * Connects the players, plays until the end of the test and prints the report
+	 * @param out The stream receiving the report.
+	 * @throws IOException if the players can not connect.
+	 * @throws InterruptedException if interrupted while waiting for the threads.
+	 */
+	public void run(PrintStream out) throws IOException, InterruptedException {
+		Random seeds = new Random(seed);
+		final Selector[] selectors = new Selector[threads];
+		for(int i = 0; i < threads; ++i)
+			selectors[i] = Selector.open();
+		for(int i = 0; i < connections; ++i) {
+			SocketChannel channel = SocketChannel.open(address);
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			long playerSeed = seeds.nextLong();
+			Player player = new Player(channel, BotStrategies.create(strategy, new Random(playerSeed)), playerSeed);
+			channel.register(selectors[i % threads], SelectionKey.OP_READ, player);
+		}
+		final long deadline = System.nanoTime() + durationNanos;
+		final Results[] results = new Results[threads];
+		List<Thread> running = new ArrayList<Thread>();
+		long start = System.nanoTime();
+		for(int i = 0; i < threads; ++i) {
+			final int index = i;
+			results[i] = new Results();
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					play(selectors[index], deadline, results[index]);
+				}
+			}, "game-load-" + i);
+			thread.start();
+			running.add(thread);
+		}
+		for(Thread thread : running)
+			thread.join();
+		long elapsed = System.nanoTime() - start;
+
+		Results total = new Results();
+		for(Results result : results)
+			total.add(result);
+		LatencyHistogram latencies = total.latencies;
+		double seconds = elapsed / 1e9;
+		out.printf("%d players on %d threads against %s, strategy %s%n", connections, threads, address, strategy);
+		out.printf("Time: %.3f s%n", seconds);
+		out.printf("Throughput: %.0f requests/s, %.0f games/s%n", total.requests / seconds, total.games / seconds);
+		out.printf("Games: %d, won %d, mismatched sums %d, lost connections %d%n", total.games, total.wins,
+				total.mismatches, total.errors);
+		out.printf("Request latency (us): mean %.2f, p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, max %.2f%n",
+				latencies.getMean() / 1e3, latencies.getPercentile(50) / 1e3, latencies.getPercentile(90) / 1e3,
+				latencies.getPercentile(99) / 1e3, latencies.getPercentile(99.9) / 1e3, latencies.getMax() / 1e3);
+	}
+
+	/**
+	 * Plays the games of the players of a selector until the deadline, on a thread of the client
+	 */
+	private static void play(Selector selector, long deadline, Results results) {
+		int active = selector.keys().size();
+		try {
+			while(active > 0) {
+				if(System.nanoTime() - deadline > GRACE_NANOS) {
+					// The server did not answer the last requests
+					results.errors += active;
+					break;
+				}
+				selector.select(100);
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while(keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					Player player = (Player) key.attachment();
+					try {
+						if(key.isWritable())
+							send(key, player);
+						if(key.isValid() && key.isReadable())
+							receive(key, player, deadline, results);
+					} catch (IOException | RuntimeException e) {
+						++results.errors;
+						player.done = true;
+					}
+					if(player.done) {
+						key.cancel();
+						key.channel().close();
+						--active;
+					}
+				}
+			}
+		} catch (IOException e) {
+			System.err.println("The load client failed: " + e.getMessage());
+		} finally {
+			for(SelectionKey key : selector.keys()) {
+				try {
+					key.channel().close();
+				} catch (IOException e) {
+					// Already lost
+				}
+			}
+			try {
+				selector.close();
+			} catch (IOException e) {
+				// The test is over
+			}
+		}
+	}
+
+	/**
+	 * Reads the messages of the server for a player and answers them
+	 */
+	private static void receive(SelectionKey key, Player player, long deadline, Results results) throws IOException {
+		if(player.channel.read(player.input) < 0)
+			throw new IOException("Connection closed by the server");
+		ByteBuffer input = player.input;
+		input.flip();
+		while(input.remaining() >= GameProtocol.FRAME_HEADER) {
+			int length = input.getShort(input.position()) & 0xFFFF;
+			if(input.remaining() < GameProtocol.FRAME_HEADER + length)
+				break;
+			input.position(input.position() + GameProtocol.FRAME_HEADER);
+			byte type = input.get();
+			// Only the first message of a player is not an answer
+			if(player.game != null) {
+				results.latencies.record(System.nanoTime() - player.sentAt);
+				++results.requests;
+			}
+			if(type == GameProtocol.GAME)
+				gameReceived(player, input);
+			else if(type == GameProtocol.UPDATE)
+				updateReceived(player, input, results);
+			else
+				throw new IOException("Unknown message " + type);
+			if(System.nanoTime() - deadline >= 0)
+				player.done = true;
+			else
+				request(key, player, results);
+		}
+		input.compact();
+	}
+
+	/**
+	 * Loads a new game in the copy of the game of a player
+	 */
+	private static void gameReceived(final Player player, ByteBuffer input) {
+		player.arcade = (input.get() & GameProtocol.ARCADE_FLAG) != 0;
+		int level = input.get();
+		input.getInt();
+		input.getInt();
+		int[] numbers = new int[input.getShort()];
+		for(int i = 0; i < numbers.length; ++i)
+			numbers[i] = input.get();
+		player.puzzle = new Puzzle(numbers, player.arcade, level, 0, Puzzle.UNSOLVED);
+		if(player.game == null)
+			player.game = new GameEngine(new PuzzleSource() {
+				@Override
+				public Puzzle nextPuzzle(Random random, boolean arcade, int level) {
+					return player.puzzle;
+				}
+			}, player.seed);
+		player.game.setMode(player.arcade, level);
+		player.game.newGame();
+		player.strategy.gameStarted(player.game);
+	}
+
+	/**
+	 * Applies an accepted selection to the copy of the game of a player, and
+	 * checks its sum
+	 */
+	private static void updateReceived(Player player, ByteBuffer input, Results results) {
+		boolean accepted = (input.get() & GameProtocol.ACCEPTED) != 0;
+		int sum = input.getInt();
+		input.getShort();
+		input.getInt();
+		if(accepted) {
+			if(player.action == GameProtocol.CLICK)
+				player.game.clickTile(player.position);
+			else if(player.action == GameProtocol.PAIR)
+				player.game.selectPair(player.position);
+			else if(player.action == GameProtocol.RESET) {
+				player.game.resetGame();
+				player.strategy.gameStarted(player.game);
+			}
+		}
+		if(player.game.getCurrentSum() != sum)
+			++results.mismatches;
+	}
+
+	/**
+	 * Sends the next request of a player: arcade mode first, then the moves
+	 * of its strategy, and a new game or a new run once a game is over
+	 */
+	private static void request(SelectionKey key, Player player, Results results) throws IOException {
+		GameEngine game = player.game;
+		byte action;
+		int position = 0;
+		if(!player.arcade)
+			action = GameProtocol.ARCADE;
+		else if(game.isGameOver()) {
+			++results.games;
+			if(game.isGameWon())
+				++results.wins;
+			// A run ends when a game is lost or the last level is won
+			action = (game.isGameWon() && game.getPuzzle().getLevel() < GameEngine.MAX_LEVEL)
+					? GameProtocol.NEXT : GameProtocol.RESTART;
+		}
+		else if(game.getClickedCounter() > 0 && player.random.nextDouble() < RESET_PROBA)
+			action = GameProtocol.RESET;
+		else {
+			int move = player.strategy.nextMove(game);
+			action = (Group.length(move) == 2) ? GameProtocol.PAIR : GameProtocol.CLICK;
+			position = Group.start(move);
+		}
+		player.action = action;
+		player.position = position;
+		GameProtocol.writeRequest(player.output, action, position);
+		player.sentAt = System.nanoTime();
+		send(key, player);
+	}
+
+	/**
+	 * Writes the pending request of a player, waiting for the channel to be
+	 * writable if it could not be written at once
+	 */
+	private static void send(SelectionKey key, Player player) throws IOException {
+		player.output.flip();
+		player.channel.write(player.output);
+		boolean pending = player.output.hasRemaining();
+		player.output.compact();
+		key.interestOps(pending ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+	}
+
+	/**
+	 * Runs the load test
+	 * @param args The number of players (1000 by default), the duration in
+	 * seconds (10), the strategy (solver), the number of threads (half the
+	 * cores) and the address of the server as host:port. Without an address,
+	 * the test starts a server of its own on a free local port.
+	 * @throws IOException if the players can not connect.
+	 * @throws InterruptedException if interrupted while waiting for the players.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int connections = (args.length > 0) ? Integer.parseInt(args[0]) : 1000;
+		double seconds = (args.length > 1) ? Double.parseDouble(args[1]) : 10;
+		String strategy = (args.length > 2) ? args[2] : BotStrategies.SOLVER;
+		int cores = Runtime.getRuntime().availableProcessors();
+		int threads = (args.length > 3) ? Integer.parseInt(args[3]) : Math.max(1, cores / 2);
+		GameServer server = null;
+		InetSocketAddress address;
+		if(args.length > 4) {
+			int colon = args[4].lastIndexOf(':');
+			address = new InetSocketAddress(args[4].substring(0, colon), Integer.parseInt(args[4].substring(colon + 1)));
+		}
+		else {
+			server = new GameServer(new InetSocketAddress("localhost", 0), Math.max(1, cores - threads), new PuzzleGenerator());
+			server.start();
+			address = new InetSocketAddress("localhost", server.getPort());
+		}
+		try {
+			new GameLoadClient(address, connections, threads, seconds, strategy, 1).run(System.out);
+		} finally {
+			if(server != null)
+				server.close();
+		}
+	}
+}
@@ -0,0 +1,314 @@
+import java.beans.ConstructorProperties;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The game metrics measure where the time goes in the hot paths of the
+ * model and the view (puzzle generation, sum changes, event delivery, board
+ * rebuilds, paints, and the latency from a click to the paint showing it),
+ * in {@link LatencyHistogram}s, and count the games of the session. They
+ * can be registered as an MXBean, to be read from a JMX console on a
+ * running game without attaching a profiler.
+ * A probe costs two calls to {@link System#nanoTime()} and an uncontended
+ * lock, and nothing when the latencies are not measured.
+ *
+ */
+public final class GameMetrics implements GameMetricsMXBean {
+	/**
+	 * Name of the MXBean of the game
+	 */
+	public static final String OBJECT_NAME = "meansum:type=GameMetrics";
+
+	// Measured hot paths
+	public static enum Probe {GENERATION, SUM, DISPATCH, REBUILD, PAINT, CLICK_TO_PAINT};
+
+	/**
+	 * Summary of the latencies of a probe, in nanoseconds
+	 */
+	public static final class Latency {
+		private final long count;
+		private final double mean;
+		private final long p50;
+		private final long p90;
+		private final long p99;
+		private final long p999;
+		private final long max;
+
+		/**
+		 * Constructor
+		 * @param count The number of measures.
+		 * @param mean The mean latency.
+		 * @param p50 The median latency.
+		 * @param p90 The 90th percentile.
+		 * @param p99 The 99th percentile.
+		 * @param p999 The 99.9th percentile.
+		 * @param max The largest latency.
+		 */
+		@ConstructorProperties({"count", "mean", "p50", "p90", "p99", "p999", "max"})
+		public Latency(long count, double mean, long p50, long p90, long p99, long p999, long max) {
+			this.count = count;
+			this.mean = mean;
+			this.p50 = p50;
+			this.p90 = p90;
+			this.p99 = p99;
+			this.p999 = p999;
+			this.max = max;
+		}
+
+		/**
+		 * @return the number of measures
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return the mean latency
+		 */
+		public double getMean() {
+			return mean;
+		}
+
+		/**
+		 * @return the median latency
+		 */
+		public long getP50() {
+			return p50;
+		}
+
+		/**
+		 * @return the 90th percentile
+		 */
+		public long getP90() {
+			return p90;
+		}
+
+		/**
+		 * @return the 99th percentile
+		 */
+		public long getP99() {
+			return p99;
+		}
+
+		/**
+		 * @return the 99.9th percentile
+		 */
+		public long getP999() {
+			return p999;
+		}
+
+		/**
+		 * @return the largest latency
+		 */
+		public long getMax() {
+			return max;
+		}
+
+		@Override
+		public String toString() {
+			return "count " + count + ", mean " + Math.round(mean) + " ns, p50 " + p50 + " ns, p99 " + p99
+					+ " ns, max " + max + " ns";
+		}
+	}
+
+	/**
+	 * Latencies of each probe, indexed by its ordinal, each locked while read or written
+	 */
+	private final LatencyHistogram[] histograms = new LatencyHistogram[Probe.values().length];
+	private volatile boolean enabled = true;
+	/**
+	 * Time of the oldest selection not painted yet, 0 if none
+	 */
+	private volatile long inputAt;
+
+	private final AtomicLong games = new AtomicLong();
+	private final AtomicLong wins = new AtomicLong();
+	private final AtomicLong losses = new AtomicLong();
+	private final AtomicLong resets = new AtomicLong();
+	private volatile int levelReached;
+
+	/**
+	 * Constructor
+	 */
+	public GameMetrics() {
+		for(int i = 0; i < histograms.length; ++i)
+			histograms[i] = new LatencyHistogram();
+	}
+
+	/**
+	 * Registers the metrics on the platform MBean server, as {@link #OBJECT_NAME}
+	 * @throws JMException if the metrics can not be registered.
+	 */
+	public void register() throws JMException {
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+	}
+
+	/**
+	 * Starts measuring a probe
+	 * @return The start of the measure, to give to {@link #end(Probe, long)}.
+	 */
+	public long begin() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Ends the measure of a probe
+	 * @param probe The probe.
+	 * @param begin The start of the measure.
+	 */
+	public void end(Probe probe, long begin) {
+		if(begin != 0)
+			record(probe, System.nanoTime() - begin);
+	}
+
+	/**
+	 * Records a latency
+	 * @param probe The probe.
+	 * @param nanos The latency, in nanoseconds.
+	 */
+	public void record(Probe probe, long nanos) {
+		LatencyHistogram histogram = histograms[probe.ordinal()];
+		synchronized(histogram) {
+			histogram.record(nanos);
+		}
+	}
+
+	/**
+	 * Notes a selection of the user, to measure the time until it is painted
+	 */
+	public void inputReceived() {
+		if(enabled && inputAt == 0)
+			inputAt = System.nanoTime();
+	}
+
+	/**
+	 * Ends the measure of a paint of the tiles, which shows the selections
+	 * received since the previous one
+	 * @param begin The start of the paint.
+	 */
+	public void painted(long begin) {
+		end(Probe.PAINT, begin);
+		long input = inputAt;
+		if(input != 0) {
+			inputAt = 0;
+			record(Probe.CLICK_TO_PAINT, System.nanoTime() - input);
+		}
+	}
+
+	/**
+	 * Counts a new game
+	 * @param arcade Whether the game is in arcade mode.
+	 * @param level The arcade level of the game.
+	 */
+	public void gameStarted(boolean arcade, int level) {
+		games.incrementAndGet();
+		if(arcade && level > levelReached)
+			levelReached = level;
+	}
+
+	/**
+	 * Counts a game over
+	 * @param won Whether the game was won.
+	 */
+	public void gameOver(boolean won) {
+		(won ? wins : losses).incrementAndGet();
+	}
+
+	/**
+	 * Counts a reset
+	 */
+	public void gameReset() {
+		resets.incrementAndGet();
+	}
+
+	/**
+	 * Summarizes the latencies of a probe
+	 * @param probe The probe.
+	 * @return The summary.
+	 */
+	public Latency getLatency(Probe probe) {
+		LatencyHistogram histogram = histograms[probe.ordinal()];
+		synchronized(histogram) {
+			return new Latency(histogram.getCount(), histogram.getMean(), histogram.getPercentile(50),
+					histogram.getPercentile(90), histogram.getPercentile(99), histogram.getPercentile(99.9),
+					histogram.getMax());
+		}
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+		inputAt = 0;
+	}
+
+	@Override
+	public long getGames() {
+		return games.get();
+	}
+
+	@Override
+	public long getWins() {
+		return wins.get();
+	}
+
+	@Override
+	public long getLosses() {
+		return losses.get();
+	}
+
+	@Override
+	public long getResets() {
+		return resets.get();
+	}
+
+	@Override
+	public int getLevelReached() {
+		return levelReached;
+	}
+
+	@Override
+	public Latency getGeneration() {
+		return getLatency(Probe.GENERATION);
+	}
+
+	@Override
+	public Latency getSumChange() {
+		return getLatency(Probe.SUM);
+	}
+
+	@Override
+	public Latency getDispatch() {
+		return getLatency(Probe.DISPATCH);
+	}
+
+	@Override
+	public Latency getRebuild() {
+		return getLatency(Probe.REBUILD);
+	}
+
+	@Override
+	public Latency getPaint() {
+		return getLatency(Probe.PAINT);
+	}
+
+	@Override
+	public Latency getClickToPaint() {
+		return getLatency(Probe.CLICK_TO_PAINT);
+	}
+
+	@Override
+	public void clear() {
+		for(LatencyHistogram histogram : histograms)
+			synchronized(histogram) {
+				histogram.clear();
+			}
+	}
+}
@@ -0,0 +1,77 @@
+/**
+ * Management interface of the {@link GameMetrics}, to read the latencies
+ * and counters of a running game from a JMX console.
+ *
+ */
+public interface GameMetricsMXBean {
+	/**
+	 * @return whether the latencies are measured
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Starts or stops measuring the latencies (the counters are always kept)
+	 * @param enabled True to measure the latencies.
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 * @return the number of games started
+	 */
+	long getGames();
+
+	/**
+	 * @return the number of games won
+	 */
+	long getWins();
+
+	/**
+	 * @return the number of games lost
+	 */
+	long getLosses();
+
+	/**
+	 * @return the number of resets
+	 */
+	long getResets();
+
+	/**
+	 * @return the highest arcade level reached, 0 if arcade mode was not played
+	 */
+	int getLevelReached();
+
+	/**
+	 * @return the time spent waiting for the puzzle of a new game
+	 */
+	GameMetrics.Latency getGeneration();
+
+	/**
+	 * @return the time spent updating the model after a change of the sum
+	 */
+	GameMetrics.Latency getSumChange();
+
+	/**
+	 * @return the time spent delivering an event to its listeners
+	 */
+	GameMetrics.Latency getDispatch();
+
+	/**
+	 * @return the time spent rebinding the board to a new game
+	 */
+	GameMetrics.Latency getRebuild();
+
+	/**
+	 * @return the time spent painting the tiles
+	 */
+	GameMetrics.Latency getPaint();
+
+	/**
+	 * @return the time from a selection of the user to the end of the next paint of the tiles
+	 */
+	GameMetrics.Latency getClickToPaint();
+
+	/**
+	 * Forgets the measured latencies
+	 */
+	void clear();
+}
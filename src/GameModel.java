@@ -1,192 +1,791 @@
-import java.util.ArrayList;
-import java.util.Observable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ConcurrentModificationException;
 import java.util.concurrent.ThreadLocalRandom;
- 
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * The game model handles the logic of the game (generating the numbers, etc.).
  * The instance of the model is used by the view-controller module
  * to trigger actions (for example, generate a new game) and retrieve information
  * about the current status of the game (the digits, the goal, etc.).
+ * The rules themselves are implemented by a headless {@link GameEngine};
+ * the model posts an event on its {@link GameEventBus} for every change of
+ * the engine. When hints are enabled, a {@link HintEngine} analyses every
+ * change in the background and the model posts a HINT event with each
+ * new hint. The actions of the user can be recorded in an {@link ActionLog}
+ * to replay the session.
+ * The state of the game is published as an immutable {@link GameSnapshot}
+ * after every change, before the event is posted: the getters of the model
+ * read the latest snapshot, so they can be called from any thread. The
+ * actions must be called from one thread at a time (the event dispatch
+ * thread for the user interface).
  *
  */
-public class GameModel extends Observable {
-	
+public class GameModel implements GameActions {
+
 	// Type of modification of the GameModel
-	public static enum MessCode{RESET,USERGROUP, NEW, SUMCHANGED, ARCADE, RESTART}; 
-	public int numberCount;
-	public int goal;
-	public ArrayList<Integer> numbers = new ArrayList<Integer>();
-	public ArrayList<Group> userGroups = new ArrayList<Group>();
-	public String numberSuite;
-	public int numberOfTiles;
-	public int clickedCounter;
-	public int currentSum;
-	// Set arcade to disabled by default
-	public boolean arcadeEnabled = false;
-	// Starts at level 1 by default
-	public int level = 1;
-	public boolean gameOver;
-	public boolean gameWon;
-	public int resetCounter;
-	private double doubleDigitProba;
-		
+	public static enum MessCode{RESET,USERGROUP, NEW, SUMCHANGED, ARCADE, RESTART, HINT};
+	/**
+	 * Rules and state of the current game
+	 */
+	private final GameEngine engine;
+	/**
+	 * Latest snapshot of the state of the engine
+	 */
+	private final AtomicReference<GameSnapshot> state = new AtomicReference<GameSnapshot>();
+	/**
+	 * Time spent on the current game, paused once the game is over
+	 */
+	private final GameClock clock = new GameClock();
+	/**
+	 * Latencies of the hot paths of the model and its views, and counters of the session
+	 */
+	private final GameMetrics metrics = new GameMetrics();
+	/**
+	 * Delivers the modifications of the model to its listeners
+	 */
+	private final GameEventBus eventBus;
+	/**
+	 * Analyses the game in the background, or null when hints are disabled
+	 */
+	private HintEngine hintEngine;
+	/**
+	 * Stamp of the latest state sent to the hint engine
+	 */
+	private volatile long hintStamp;
+	private volatile Hint hint = Hint.UNKNOWN;
+	/**
+	 * Records the actions of the user, or null
+	 */
+	private ActionLog.Writer recorder;
+	/**
+	 * Records the events of the games, or null
+	 */
+	private EventLog eventLog;
+	/**
+	 * Number of the current game, in the events
+	 */
+	private int gameNumber;
+	/**
+	 * Largest puzzle whose numbers are recorded in the event log
+	 */
+	private static final int MAX_LOGGED_NUMBERS = 96;
+	/**
+	 * Keeps the best runs, or null
+	 */
+	private Leaderboard leaderboard;
+	/**
+	 * Highest level won in the current arcade run, and the resets of its games
+	 */
+	private int runLevel;
+	private int runResets;
+	/**
+	 * Whether the current arcade run was recorded once its last level was
+	 * won: the games won after it are not part of a run until a new one starts
+	 */
+	private boolean runEnded;
+	/**
+	 * Whether the end of the current game was handled (clock paused, result
+	 * counted, logged and recorded), so it is handled once
+	 */
+	private boolean overHandled;
+
 	/**
 	 * Constructor for the GameModel
 	 */
 	public GameModel() {
-		// Calls the method that initializes all the components of the game model
-		initComponents();
+		this(new PuzzleGenerator());
+	}
+
+	/**
+	 * Constructor for the GameModel
+	 * @param puzzleSource The source of the puzzles of new games.
+	 */
+	public GameModel(PuzzleSource puzzleSource) {
+		this(puzzleSource, new GameEventBus());
+	}
+
+	/**
+	 * Constructor for the GameModel
+	 * @param puzzleSource The source of the puzzles of new games.
+	 * @param eventBus The bus delivering the modifications of the model.
+	 */
+	public GameModel(PuzzleSource puzzleSource, GameEventBus eventBus) {
+		this(puzzleSource, eventBus, ThreadLocalRandom.current().nextLong());
+	}
+
+	/**
+	 * Constructor for the GameModel
+	 * @param puzzleSource The source of the puzzles of new games.
+	 * @param eventBus The bus delivering the modifications of the model.
+	 * @param seed The seed of the random generator drawing the puzzles.
+	 */
+	public GameModel(PuzzleSource puzzleSource, GameEventBus eventBus, long seed) {
+		if(eventBus == null)
+			throw new IllegalArgumentException("Should provide a valid GameEventBus!");
+		this.eventBus = eventBus;
+		eventBus.setMetrics(metrics);
+		long begin = metrics.begin();
+		engine = new GameEngine(puzzleSource, seed);
+		metrics.end(GameMetrics.Probe.GENERATION, begin);
+		state.set(GameSnapshot.of(engine, 0));
+		// The first game is timed and counted as the next ones
+		gameCreated();
 	}
 	/**
 	 * Create a new game
+	 * @return True if a new game was created.
 	 */
-	public void nextGame(){
-		if(!this.arcadeEnabled) {
-			initComponents();
-			// The code below alerts observers than the model has been modified
-			this.setChanged();
-			this.notifyObservers(MessCode.NEW);
+	@Override
+	public boolean nextGame(){
+		long begin = metrics.begin();
+		if(!engine.nextGame()) {
+			if(recorder != null)
+				recorder.next();
+			return false;
 		}
-		else if(this.arcadeEnabled && this.gameWon) {
-			initComponents();
-			// The code below alerts observers than the model has been modified
-			this.setChanged();
-			this.notifyObservers(MessCode.NEW);
-		}
-		
+		metrics.end(GameMetrics.Probe.GENERATION, begin);
+		gameCreated();
+		if(recorder != null)
+			recorder.next();
+		// The code below alerts listeners than the model has been modified
+		eventBus.post(GameEvent.of(MessCode.NEW, 0));
+		return true;
 	}
-	
+
 	/**
 	 * Reset the groups of user
+	 * @return True if the game was reset.
 	 */
-	public void resetGame(){
-		if(!this.gameOver) {
-			// The code below alerts observers than the model has been modified
-			++this.resetCounter;
-			this.setChanged();
-			this.notifyObservers(MessCode.RESET);
-		}
+	@Override
+	public boolean resetGame(){
+		if(recorder != null)
+			recorder.reset();
+		int oldSum = engine.getCurrentSum();
+		if(!engine.resetGame())
+			return false;
+		publishGame();
+		metrics.gameReset();
+		log(EventLog.RESET, engine.getResetCounter(), oldSum, 0, 0);
+		groupsChanged(0, engine.getNumberOfTiles() - 1);
+		// The code below alerts listeners than the model has been modified
+		eventBus.post(new GameEvent(MessCode.RESET, oldSum, 0, 0, engine.getNumberOfTiles() - 1));
+		return true;
+	}
+
+	/**
+	 * Undoes the latest selection of the user
+	 * @return True if a selection was undone.
+	 */
+	@Override
+	public boolean undo() {
+		if(recorder != null)
+			recorder.undo();
+		int group = engine.getUndoGroup();
+		int oldSum = engine.getCurrentSum();
+		if(!engine.undo())
+			return false;
+		log(EventLog.UNDO, Group.start(group), Group.length(group), engine.getCurrentSum(), 0);
+		historyChanged(oldSum, group);
+		return true;
+	}
+
+	/**
+	 * Redoes the latest undone selection of the user
+	 * @return True if a selection was redone.
+	 */
+	@Override
+	public boolean redo() {
+		if(recorder != null)
+			recorder.redo();
+		int group = engine.getRedoGroup();
+		int oldSum = engine.getCurrentSum();
+		if(!engine.redo())
+			return false;
+		log(EventLog.REDO, Group.start(group), Group.length(group), engine.getCurrentSum(), 0);
+		historyChanged(oldSum, group);
+		return true;
+	}
+
+	/**
+	 * Notifies an undo or redo of a selection
+	 * @param oldSum The current sum before the change.
+	 * @param group The group of the selection.
+	 */
+	private void historyChanged(int oldSum, int group) {
+		// The previous groups of its tiles are at most one tile away
+		int start = Group.start(group);
+		sumChanged(oldSum, Math.max(start - 1, 0), Math.min(start + Group.length(group), engine.getNumberOfTiles() - 1));
 	}
-	
+
 	/**
 	 * Enables or disables arcade mode
 	 */
+	@Override
 	public void arcadeGame() {
-		initComponents();
-		
-		// The code below alerts observers than the model has been modified
-		this.setChanged();
-		this.notifyObservers(MessCode.ARCADE);
-		
+		recordRun();
+		clock.clearSplits();
+		long begin = metrics.begin();
+		engine.arcadeGame();
+		metrics.end(GameMetrics.Probe.GENERATION, begin);
+		gameCreated();
+		// The change of mode belongs to the new game
+		log(EventLog.MODE, engine.isArcadeEnabled() ? 1 : 0, engine.getLevel(), 0, 0);
+		if(recorder != null)
+			recorder.arcade();
+
+		// The code below alerts listeners than the model has been modified
+		eventBus.post(GameEvent.of(MessCode.ARCADE, 0));
+
 	}
-	
+
 	/**
 	 * Restarts the game in arcade mode
 	 */
+	@Override
 	public void restartGame() {
-		initComponents();
-		
-		// The code below alerts observers than the model has been modified
-		this.setChanged();
-		this.notifyObservers(MessCode.RESTART);
-		
+		recordRun();
+		clock.clearSplits();
+		int level = engine.getLevel();
+		long begin = metrics.begin();
+		engine.restartGame();
+		metrics.end(GameMetrics.Probe.GENERATION, begin);
+		gameCreated();
+		log(EventLog.LEVEL, level, engine.getLevel(), 0, 0);
+		if(recorder != null)
+			recorder.restart();
+
+		// The code below alerts listeners than the model has been modified
+		eventBus.post(GameEvent.of(MessCode.RESTART, 0));
+
 	}
-	
+
 	/**
-	 * Removes empty groups from the userGroups list.
+	 * Selects a single tile
+	 * @param position The position of the tile.
+	 * @return True if the selection was accepted.
 	 */
-	public void removeEmptyGroups() {
-		for(int i = 0; i < userGroups.size(); ++i) {
-			if(userGroups.get(i).isEmpty()) {
-				userGroups.remove(i);
-			}
+	@Override
+	public boolean clickTile(int position) {
+		if(recorder != null)
+			recorder.click(position);
+		if(position < 0 || position >= engine.getNumberOfTiles()) {
+			log(EventLog.REJECTED, position, 1, 0, 0);
+			return false;
 		}
+		int oldSum = engine.getCurrentSum();
+		// The previous group of the tile changes too
+		int previous = engine.groupAt(position);
+		if(!engine.clickTile(position)) {
+			log(EventLog.REJECTED, position, 1, 0, 0);
+			return false;
+		}
+		metrics.inputReceived();
+		log(EventLog.GROUP, position, 1, engine.getCurrentSum(), engine.getClickedCounter());
+		sumChanged(oldSum, firstTile(previous, position), lastTile(previous, position));
+		return true;
 	}
-	
+
+	/**
+	 * Selects a tile and the tile that follows it as a pair
+	 * @param position The position of the first tile of the pair.
+	 * @return True if the selection was accepted.
+	 */
+	@Override
+	public boolean selectPair(int position) {
+		if(recorder != null)
+			recorder.pair(position);
+		if(position < 0 || position + 1 >= engine.getNumberOfTiles()) {
+			log(EventLog.REJECTED, position, 2, 0, 0);
+			return false;
+		}
+		int oldSum = engine.getCurrentSum();
+		// The previous groups of both tiles change too
+		int first = firstTile(engine.groupAt(position), position);
+		int last = lastTile(engine.groupAt(position + 1), position + 1);
+		if(!engine.selectPair(position)) {
+			log(EventLog.REJECTED, position, 2, 0, 0);
+			return false;
+		}
+		metrics.inputReceived();
+		log(EventLog.GROUP, position, 2, engine.getCurrentSum(), engine.getClickedCounter());
+		sumChanged(oldSum, first, last);
+		return true;
+	}
+
+	/**
+	 * @return the first tile of a group and a tile
+	 */
+	private static int firstTile(int group, int position) {
+		return (group == Group.EMPTY) ? position : Math.min(Group.start(group), position);
+	}
+
+	/**
+	 * @return the last tile of a group and a tile
+	 */
+	private static int lastTile(int group, int position) {
+		return (group == Group.EMPTY) ? position : Math.max(Group.start(group) + Group.length(group) - 1, position);
+	}
+
 	/**
 	 * Notifies current sum has changed
+	 * @param oldSum The current sum before the change.
+	 * @param firstTile The first tile whose group changed.
+	 * @param lastTile The last tile whose group changed.
+	 */
+	private void sumChanged(int oldSum, int firstTile, int lastTile){
+		long begin = metrics.begin();
+		publish(state.get().update(engine, firstTile, lastTile));
+		if(engine.isGameOver() && !overHandled)
+			gameOver();
+		groupsChanged(firstTile, lastTile);
+		metrics.end(GameMetrics.Probe.SUM, begin);
+		// The code below alerts listeners than the model has been modified
+		eventBus.post(new GameEvent(MessCode.SUMCHANGED, oldSum, engine.getCurrentSum(), firstTile, lastTile));
+	}
+
+	/**
+	 * Stops the clock of a game that is over, and records the time of a won level
 	 */
-	public void sumChanged(){
-		// Remove empty groups from the user groups list
-		removeEmptyGroups();
-		
-		// Initialize sum variable at 0
-		int userGroupsSum = 0;
-		
-		// Add the sum for each group to total sum
-		for(int i = 0; i < userGroups.size(); ++i) {
-			userGroupsSum += userGroups.get(i).getSum();
+	private void gameOver() {
+		overHandled = true;
+		clock.pause();
+		metrics.gameOver(engine.isGameWon());
+		Puzzle puzzle = engine.getPuzzle();
+		if(!engine.isGameWon()) {
+			log(EventLog.LOSE, clock.getElapsedMillis(), engine.getCurrentSum(), engine.getGoal(), engine.getResetCounter());
+			return;
 		}
-		// Set total sum to GameModel variable
-		this.currentSum = userGroupsSum;
-		
-		// Check if the game is over
-		if(this.clickedCounter == this.numberOfTiles)
-			this.gameOver = true;
-		// Check if the game is won
-		if(this.currentSum == this.goal)
-			this.gameWon = true;
-		// The code below alerts observers than the model has been modified
-		this.setChanged();
-		this.notifyObservers(MessCode.SUMCHANGED);
-	}
-	
+		log(EventLog.WIN, clock.getElapsedMillis(), puzzle.isArcade() ? puzzle.getLevel() : 0,
+				engine.getResetCounter(), engine.getGroupCount());
+		if(puzzle.isArcade()) {
+			if(engine.getLevel() != puzzle.getLevel())
+				log(EventLog.LEVEL, puzzle.getLevel(), engine.getLevel(), 0, 0);
+			if(runEnded)
+				return;
+			clock.split(puzzle.getLevel());
+			runLevel = puzzle.getLevel();
+			runResets += engine.getResetCounter();
+			// The run is over once the last level is won
+			if(runLevel == GameEngine.MAX_LEVEL) {
+				recordRun();
+				runEnded = true;
+			}
+		}
+		else
+			recordRun(Leaderboard.TRAINING, 0, clock.getElapsedMillis(), engine.getResetCounter());
+	}
+
+	/**
+	 * Records the arcade run in progress, if a level was won, and starts a new one
+	 */
+	private void recordRun() {
+		if(runLevel > 0)
+			recordRun(Leaderboard.ARCADE, runLevel, clock.getRunMillis(), runResets);
+		runLevel = 0;
+		runResets = 0;
+		runEnded = false;
+	}
+
+	/**
+	 * Records a run in the leaderboard, if there is one
+	 */
+	private void recordRun(int mode, int level, long millis, int resets) {
+		if(leaderboard == null)
+			return;
+		try {
+			leaderboard.record(mode, level, millis, resets);
+		} catch (IOException e) {
+			System.err.println("Could not record the run: " + e.getMessage());
+		}
+	}
+
 	/**
 	 * Method that initializes all the components of the game model
 	 */
 	public void initComponents() {
-		this.doubleDigitProba = 0.3 + (0.3 * level / 20);
-		this.userGroups.clear();
-		this.gameOver = false;
-		this.gameWon = false;
-		this.clickedCounter = 0;
-		this.currentSum = 0;
-		this.resetCounter = 0;
-		int total = 0;
-		this.numbers.clear();
-		this.numberSuite = "";
-		// Generate a random number between 3 and 6
-		this.numberCount = ((!this.arcadeEnabled) ? ThreadLocalRandom.current().nextInt(3, 6 + 1) : 
-			(int) ( 3 + Math.round(3.0 * level / 20)));
-		// For each created group, either a number between 1 and 9 or 10 and 99
-		for(int i=0; i< numberCount; ++i) {
-			if(!this.arcadeEnabled) {
-				// Training mode number generation
-				if(ThreadLocalRandom.current().nextInt(1, 10 + 1) <= 7) {
-					numbers.add(ThreadLocalRandom.current().nextInt(1, 9 + 1));
-				}
-				else {
-					numbers.add(ThreadLocalRandom.current().nextInt(10, 99 + 1));
-				}
-			}
-			else {
-				// Arcade mode number generation
-				if(ThreadLocalRandom.current().nextDouble() > this.doubleDigitProba)
-					numbers.add(ThreadLocalRandom.current().nextInt(1, 9 + 1));
-				else
-					numbers.add(ThreadLocalRandom.current().nextInt(10, 99 + 1));
+		newGame();
+	}
+
+	/**
+	 * Creates a new game in the current mode and level
+	 */
+	@Override
+	public void newGame() {
+		long begin = metrics.begin();
+		engine.newGame();
+		metrics.end(GameMetrics.Probe.GENERATION, begin);
+		gameCreated();
+		if(recorder != null)
+			recorder.newGame();
+		eventBus.post(GameEvent.of(MessCode.NEW, 0));
+	}
+
+	/**
+	 * Restores a saved game, with its mode, level and groups (see
+	 * {@link SessionStore}). The recording of the actions, if any, stops:
+	 * a log can not start from a restored game.
+	 * @param session The saved session.
+	 */
+	public void restoreGame(SessionStore.Session session) {
+		setRecorder(null);
+		engine.setMode(session.isArcadeEnabled(), session.getLevel());
+		engine.restoreGame(session.getPuzzle(), session.getGroups(), session.getResetCounter());
+		publishGame();
+		clock.restart(session.getElapsedMillis());
+		// A game saved once over was already counted
+		overHandled = engine.isGameOver();
+		if(overHandled)
+			clock.pause();
+		// The split times are not saved: the run starts again from the restored game
+		runLevel = 0;
+		runResets = 0;
+		runEnded = false;
+		++gameNumber;
+		log(EventLog.RESTORE, engine.getGoal(), engine.getNumberOfTiles(), engine.getClickedCounter(), session.getElapsedMillis());
+		logNumbers();
+		newGameHint();
+		if(engine.getNumberOfTiles() > 0)
+			groupsChanged(0, engine.getNumberOfTiles() - 1);
+		eventBus.post(GameEvent.of(MessCode.NEW, 0));
+	}
+
+	/**
+	 * Logs and analyses the game the engine just created, and records its puzzle
+	 */
+	private void gameCreated() {
+		publishGame();
+		clock.restart();
+		overHandled = false;
+		metrics.gameStarted(engine.isArcadeEnabled(), engine.getLevel());
+		++gameNumber;
+		logGame();
+		newGameHint();
+		if(recorder != null)
+			recorder.puzzle(engine.getPuzzle());
+	}
+
+	/**
+	 * Publishes a snapshot of the whole state of the engine
+	 */
+	private void publishGame() {
+		publish(GameSnapshot.of(engine, state.get().getVersion() + 1));
+	}
+
+	/**
+	 * Replaces the latest snapshot. The snapshot must follow the latest one:
+	 * a failed compare-and-set means the model is modified by two threads.
+	 * @param next The snapshot following the latest one.
+	 */
+	private void publish(GameSnapshot next) {
+		GameSnapshot current = state.get();
+		if(next.getVersion() != current.getVersion() + 1 || !state.compareAndSet(current, next))
+			throw new ConcurrentModificationException("The game model is modified by several threads");
+	}
+
+	/**
+	 * Sets the mode and level of the next games, without starting a new one
+	 * (to restore the state of a recorded or saved session).
+	 * @param arcade Whether arcade mode is enabled.
+	 * @param level The arcade level, between 1 and {@link GameEngine#MAX_LEVEL}.
+	 */
+	public void setMode(boolean arcade, int level) {
+		engine.setMode(arcade, level);
+		publishGame();
+	}
+
+	/**
+	 * Gets the clock of the current game. The clock can be read from any thread.
+	 * @return The clock.
+	 */
+	public GameClock getClock() {
+		return clock;
+	}
+
+	/**
+	 * Gets the metrics of the game, which the views feed with their own latencies.
+	 * The metrics can be read from any thread.
+	 * @return The metrics.
+	 */
+	public GameMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Gets the state of the game. The snapshot is immutable and can be read
+	 * from any thread.
+	 * @return The latest snapshot.
+	 */
+	public GameSnapshot getSnapshot() {
+		return state.get();
+	}
+
+	/**
+	 * Starts recording the actions of the user. The log starts from the
+	 * current game, and the previous recording, if any, is closed.
+	 * @param log The stream receiving the log, or null to stop recording.
+	 */
+	public void setRecorder(OutputStream log) {
+		if(recorder != null) {
+			try {
+				recorder.close();
+			} catch (UncheckedIOException e) {
+				System.err.println("Could not close the action log: " + e.getMessage());
 			}
-			// Adds the numbers to the total to set the goal
-			total += numbers.get(i);
 		}
-	
-
-		this.goal = total;
-		// String builder to create a number suite to insert into the tiles
-		StringBuilder sb = new StringBuilder(numbers.size());
-		for (int i : numbers) {
-		  if(i != 0)
-			  sb.append(i);
+		recorder = (log == null) ? null : ActionLog.record(log, engine);
+	}
+
+	/**
+	 * @return whether the actions of the user are recorded
+	 */
+	public boolean isRecording() {
+		return recorder != null;
+	}
+	/**
+	 * Enables or disables the analysis of the game in the background.
+	 * When enabled, a HINT event is posted with every new hint.
+	 * @param enabled True to enable the hints.
+	 */
+	public void setHintsEnabled(boolean enabled) {
+		if(enabled && hintEngine == null) {
+			hintEngine = new HintEngine(this::hintFound);
+			newGameHint();
+			// The groups of the current game are sent too
+			if(engine.getNumberOfTiles() > 0)
+				groupsChanged(0, engine.getNumberOfTiles() - 1);
 		}
-		this.numberSuite = sb.toString(); 
-		
-		// Console logging
-		this.numberOfTiles = numberSuite.length(); 
-		System.out.println("Goal: " + goal);
-		System.out.println("Number of groups: " + numberCount);
-		System.out.println("Double digit probability: "+ this.doubleDigitProba);
-		System.out.println("Numbers: " + numbers.toString());
-		System.out.println("Number suite: " + numberSuite);
-		System.out.println("Number of tiles: "+ numberOfTiles);
-	}	
+		else if(!enabled && hintEngine != null) {
+			hintEngine.close();
+			hintEngine = null;
+			hint = Hint.UNKNOWN;
+		}
+	}
+
+	/**
+	 * @return whether the game is analysed in the background
+	 */
+	public boolean isHintsEnabled() {
+		return hintEngine != null;
+	}
+
+	/**
+	 * Sends a new game to the hint engine
+	 */
+	private void newGameHint() {
+		if(hintEngine == null)
+			return;
+		byte[] digits = new byte[engine.getNumberOfTiles()];
+		engine.getPuzzle().copyDigits(digits);
+		hint = Hint.UNKNOWN;
+		hintEngine.newGame(++hintStamp, digits, engine.getGoal());
+	}
+
+	/**
+	 * Sends the groups of a range of tiles to the hint engine
+	 * @param firstTile The first tile whose group changed.
+	 * @param lastTile The last tile whose group changed.
+	 */
+	private void groupsChanged(int firstTile, int lastTile) {
+		if(hintEngine == null)
+			return;
+		int[] groups = new int[lastTile - firstTile + 1];
+		for(int i = 0; i < groups.length; ++i)
+			groups[i] = engine.groupAt(firstTile + i);
+		hintEngine.update(++hintStamp, firstTile, groups, engine.getCurrentSum());
+	}
+
+	/**
+	 * Receives the hints of the hint engine, on its thread
+	 * @param found The hint.
+	 */
+	private void hintFound(Hint found) {
+		// The hint of a state that already changed is dropped
+		if(found.getStamp() != hintStamp)
+			return;
+		this.hint = found;
+		int first = found.getFirstTile();
+		// The event carries the tiles of the suggested move, if any
+		eventBus.post(new GameEvent(MessCode.HINT, 0, 0, first, found.hasMove() ? first + found.getLength() - 1 : -1));
+	}
+
+	/**
+	 * @return the latest hint for the current game, {@link Hint#UNKNOWN}
+	 * if hints are disabled
+	 */
+	public Hint getHint() {
+		return hint;
+	}
+
+	/**
+	 * Sets the leaderboard recording the arcade runs and the won training games
+	 * @param leaderboard The leaderboard, or null.
+	 */
+	public void setLeaderboard(Leaderboard leaderboard) {
+		this.leaderboard = leaderboard;
+	}
+
+	/**
+	 * @return the leaderboard recording the runs, or null
+	 */
+	public Leaderboard getLeaderboard() {
+		return leaderboard;
+	}
+
+	/**
+	 * Sets the log receiving the events of the games, and logs the game in progress
+	 * @param eventLog The log, or null to stop logging.
+	 */
+	public void setEventLog(EventLog eventLog) {
+		this.eventLog = eventLog;
+		logGame();
+	}
+
+	/**
+	 * @return the log receiving the events of the games, or null
+	 */
+	public EventLog getEventLog() {
+		return eventLog;
+	}
+
+	/**
+	 * Records an event of the current game, if the events are logged
+	 */
+	private void log(int type, long a, long b, long c, long d) {
+		if(eventLog != null)
+			eventLog.record(type, gameNumber, a, b, c, d);
+	}
+
+	/**
+	 * Logs the generated puzzle
+	 */
+	private void logGame() {
+		Puzzle puzzle = engine.getPuzzle();
+		log(EventLog.PUZZLE, puzzle.getGoal(), puzzle.getDigitCount(), puzzle.isArcade() ? puzzle.getLevel() : 0,
+				puzzle.getSolutionCount());
+		logNumbers();
+	}
+
+	/**
+	 * Logs the numbers of the puzzle, unless it is too large
+	 */
+	private void logNumbers() {
+		Puzzle puzzle = engine.getPuzzle();
+		if(eventLog != null && puzzle.getNumberCount() <= MAX_LOGGED_NUMBERS)
+			eventLog.recordNumbers(gameNumber, puzzle.getNumbers());
+	}
+
+	/**
+	 * Subscribes a listener to types of modifications of the model
+	 * @param listener The listener.
+	 * @param codes The types of modifications.
+	 */
+	public void subscribe(GameListener listener, MessCode... codes) {
+		eventBus.subscribe(listener, codes);
+	}
+
+	/**
+	 * Unsubscribes a listener from every modification of the model
+	 * @param listener The listener.
+	 */
+	public void unsubscribe(GameListener listener) {
+		eventBus.unsubscribe(listener);
+	}
+
+	/**
+	 * @return the bus delivering the modifications of the model
+	 */
+	public GameEventBus getEventBus() {
+		return eventBus;
+	}
+
+	/**
+	 * Gets the engine running the rules of the game. Unlike the model, the
+	 * engine may only be read by the thread calling the actions.
+	 * @return The engine.
+	 */
+	public GameEngine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * @return the goal of the game
+	 */
+	public int getGoal() {
+		return state.get().getGoal();
+	}
+
+	/**
+	 * @return the number of tiles of the game
+	 */
+	public int getNumberOfTiles() {
+		return state.get().getNumberOfTiles();
+	}
+
+	/**
+	 * @param position The position of the tile.
+	 * @return the digit of the tile
+	 */
+	public int getDigit(int position) {
+		return state.get().getDigit(position);
+	}
+
+	/**
+	 * @return the digits of the game as a string
+	 */
+	public String getNumberSuite() {
+		return state.get().getNumberSuite();
+	}
+
+	/**
+	 * @param position The position of the tile.
+	 * @return the id of the group of the tile, or -1 if it is not in a group
+	 */
+	public int groupIdAt(int position) {
+		return state.get().groupIdAt(position);
+	}
+
+	/**
+	 * @return the sum of the groups selected by the user
+	 */
+	public int getCurrentSum() {
+		return state.get().getCurrentSum();
+	}
+
+	/**
+	 * @return whether arcade mode is enabled
+	 */
+	public boolean isArcadeEnabled() {
+		return state.get().isArcadeEnabled();
+	}
+
+	/**
+	 * @return the current arcade level
+	 */
+	public int getLevel() {
+		return state.get().getLevel();
+	}
+
+	/**
+	 * @return whether every tile has been clicked
+	 */
+	public boolean isGameOver() {
+		return state.get().isGameOver();
+	}
+
+	/**
+	 * @return whether the game has been won
+	 */
+	public boolean isGameWon() {
+		return state.get().isGameWon();
+	}
+
+	/**
+	 * @return the number of resets in the current game
+	 */
+	public int getResetCounter() {
+		return state.get().getResetCounter();
+	}
 }
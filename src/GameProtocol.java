@@ -0,0 +1,116 @@
+import java.nio.ByteBuffer;
+
+/**
+ * The game protocol is the compact binary protocol between the
+ * {@link GameServer} and its clients (big-endian).
+ * <p>
+ * A request of the client is 3 bytes: the action and the position of a tile
+ * (an unsigned short, 0 for the actions without a tile).
+ * <p>
+ * A message of the server is a frame of an unsigned short length followed
+ * by the message:
+ * <pre>
+ * GAME:   byte GAME, byte flags (ARCADE), byte level, int goal, int resetCounter,
+ *         short numberCount, numbers (1 byte each)
+ * UPDATE: byte UPDATE, byte flags (ACCEPTED, OVER, WON), int currentSum,
+ *         short clickedCounter, int resetCounter
+ * </pre>
+ * The server sends a GAME message when a client connects and for every new
+ * game, and an UPDATE message for the other requests. The requests are
+ * answered in order.
+ *
+ */
+public final class GameProtocol {
+	// Actions of the requests
+	public static final byte CLICK = 1;
+	public static final byte PAIR = 2;
+	public static final byte RESET = 3;
+	public static final byte NEXT = 4;
+	public static final byte ARCADE = 5;
+	public static final byte RESTART = 6;
+	public static final byte UNDO = 7;
+	public static final byte REDO = 8;
+
+	// Types of the messages
+	public static final byte GAME = 1;
+	public static final byte UPDATE = 2;
+
+	// Flags of the messages
+	public static final int ARCADE_FLAG = 1;
+	public static final int ACCEPTED = 1;
+	public static final int OVER = 2;
+	public static final int WON = 4;
+
+	/**
+	 * Size of a request
+	 */
+	public static final int REQUEST_SIZE = 3;
+	/**
+	 * Size of the length of a frame
+	 */
+	public static final int FRAME_HEADER = 2;
+	/**
+	 * Size of an UPDATE message
+	 */
+	public static final int UPDATE_SIZE = 12;
+	/**
+	 * Size of a GAME message without its numbers
+	 */
+	public static final int GAME_HEADER = 13;
+
+	private GameProtocol() {
+	}
+
+	/**
+	 * Writes a request
+	 * @param out The buffer.
+	 * @param action The action.
+	 * @param position The position of the tile of the action, or 0.
+	 */
+	public static void writeRequest(ByteBuffer out, byte action, int position) {
+		out.put(action);
+		out.putShort((short) position);
+	}
+
+	/**
+	 * Writes a GAME message framing the current game of an engine
+	 * @param out The buffer, with room for {@link #gameFrameSize(GameEngine)} bytes.
+	 * @param engine The engine.
+	 */
+	public static void writeGame(ByteBuffer out, GameEngine engine) {
+		int[] numbers = engine.getPuzzle().getNumbers();
+		out.putShort((short) (GAME_HEADER + numbers.length));
+		out.put(GAME);
+		out.put((byte) (engine.isArcadeEnabled() ? ARCADE_FLAG : 0));
+		out.put((byte) engine.getLevel());
+		out.putInt(engine.getGoal());
+		out.putInt(engine.getResetCounter());
+		out.putShort((short) numbers.length);
+		for(int number : numbers)
+			out.put((byte) number);
+	}
+
+	/**
+	 * @param engine The engine.
+	 * @return the size of the GAME frame of the current game of an engine
+	 */
+	public static int gameFrameSize(GameEngine engine) {
+		return FRAME_HEADER + GAME_HEADER + engine.getPuzzle().getNumberCount();
+	}
+
+	/**
+	 * Writes an UPDATE message framing the state of the game of an engine
+	 * @param out The buffer, with room for {@link #FRAME_HEADER} + {@link #UPDATE_SIZE} bytes.
+	 * @param engine The engine.
+	 * @param accepted Whether the request was accepted.
+	 */
+	public static void writeUpdate(ByteBuffer out, GameEngine engine, boolean accepted) {
+		int flags = (accepted ? ACCEPTED : 0) | (engine.isGameOver() ? OVER : 0) | (engine.isGameWon() ? WON : 0);
+		out.putShort((short) UPDATE_SIZE);
+		out.put(UPDATE);
+		out.put((byte) flags);
+		out.putInt(engine.getCurrentSum());
+		out.putShort((short) engine.getClickedCounter());
+		out.putInt(engine.getResetCounter());
+	}
+}
@@ -0,0 +1,198 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Random;
+
+/**
+ * The replay engine plays back a session recorded by an {@link ActionLog},
+ * headlessly, on a new {@link GameEngine} (or on a {@link GameModel}).
+ * It is also the source of the puzzles of the replayed games: the puzzles
+ * recorded in the log are handed to the engine in order, so the replayed
+ * games are the recorded ones.
+ * A replay object plays its log once.
+ *
+ */
+public class GameReplay implements PuzzleSource {
+	private final ByteBuffer log;
+	private final boolean arcade;
+	private final int level;
+	private final long seed;
+	/**
+	 * Recorded puzzles not played yet
+	 */
+	private final ArrayDeque<Puzzle> puzzles = new ArrayDeque<Puzzle>();
+
+	/**
+	 * Constructor
+	 * @param log The recorded session, from its current position. The position
+	 * of the buffer moves along the replay.
+	 */
+	public GameReplay(ByteBuffer log) {
+		if(log == null)
+			throw new IllegalArgumentException("Should provide a valid log!");
+		if(log.remaining() < ActionLog.HEADER_SIZE || log.getInt() != ActionLog.MAGIC)
+			throw new IllegalArgumentException("Not an action log");
+		int version = log.getShort();
+		if(version != ActionLog.VERSION)
+			throw new IllegalArgumentException("Unsupported action log version: " + version);
+		this.arcade = log.get() != 0;
+		this.level = log.get();
+		this.seed = log.getLong();
+		this.log = log;
+		// The log starts with the puzzle of the game in progress
+		int record = log.hasRemaining() ? readVarint() : -1;
+		if((record & 7) != ActionLog.PUZZLE)
+			throw new IllegalArgumentException("The action log has no puzzle");
+		readPuzzle(record >> ActionLog.ACTION_BITS);
+	}
+
+	/**
+	 * Opens a recorded session
+	 * @param file The file of the log.
+	 * @return The replay of the log.
+	 * @throws IOException if the file can not be read.
+	 */
+	public static GameReplay open(Path file) throws IOException {
+		return new GameReplay(ByteBuffer.wrap(Files.readAllBytes(file)));
+	}
+
+	/**
+	 * Creates an engine in the state of the game when the log started
+	 * @return The engine, to replay the log on.
+	 */
+	public GameEngine newEngine() {
+		GameEngine engine = new GameEngine(this, seed);
+		engine.setMode(arcade, level);
+		return engine;
+	}
+
+	/**
+	 * Creates a model in the state of the game when the log started
+	 * @param eventBus The bus delivering the modifications of the model.
+	 * @return The model, to replay the log on.
+	 */
+	public GameModel newModel(GameEventBus eventBus) {
+		GameModel model = new GameModel(this, eventBus, seed);
+		model.setMode(arcade, level);
+		return model;
+	}
+
+	/**
+	 * Replays the actions of the log
+	 * @param target The engine or model created by this replay.
+	 * @return The number of actions replayed.
+	 */
+	public long replay(GameActions target) {
+		long count = 0;
+		while(log.hasRemaining()) {
+			int record = readVarint();
+			int position = record >> ActionLog.ACTION_BITS;
+			switch(record & 7) {
+			case ActionLog.CLICK:
+				target.clickTile(position);
+				break;
+			case ActionLog.PAIR:
+				target.selectPair(position);
+				break;
+			case ActionLog.RESET:
+				if(position == ActionLog.UNDO)
+					target.undo();
+				else if(position == ActionLog.REDO)
+					target.redo();
+				else
+					target.resetGame();
+				break;
+			case ActionLog.NEXT:
+				target.nextGame();
+				break;
+			case ActionLog.NEW:
+				target.newGame();
+				break;
+			case ActionLog.ARCADE:
+				target.arcadeGame();
+				break;
+			case ActionLog.RESTART:
+				target.restartGame();
+				break;
+			default:
+				// The puzzle of the next new game, not an action
+				readPuzzle(position);
+				continue;
+			}
+			++count;
+		}
+		return count;
+	}
+
+	/**
+	 * Hands the recorded puzzles to the replayed engine, in order
+	 */
+	@Override
+	public Puzzle nextPuzzle(Random random, boolean arcade, int level) {
+		Puzzle puzzle = puzzles.poll();
+		if(puzzle == null)
+			throw new IllegalStateException("The action log has no puzzle for this game");
+		return puzzle;
+	}
+
+	/**
+	 * @return the seed of the recorded engine
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Reads a recorded puzzle
+	 * @param numberCount The count of numbers of the puzzle.
+	 */
+	private void readPuzzle(int numberCount) {
+		int mode = log.get();
+		int[] numbers = new int[numberCount];
+		for(int i = 0; i < numberCount; ++i)
+			numbers[i] = log.get();
+		boolean arcade = (mode & 1) != 0;
+		int level = mode >>> 1;
+		double proba = arcade ? PuzzleGenerator.doubleDigitProba(level) : PuzzleGenerator.TRAINING_DOUBLE_DIGIT_PROBA;
+		puzzles.add(new Puzzle(numbers, arcade, level, proba, Puzzle.UNSOLVED));
+	}
+
+	private int readVarint() {
+		int value = 0;
+		for(int shift = 0; ; shift += 7) {
+			int b = log.get();
+			value |= (b & 0x7F) << shift;
+			if(b >= 0)
+				return value;
+		}
+	}
+
+	/**
+	 * Replays a recorded session on an engine and reports its speed.
+	 * @param args The file of the log, and optionally the number of replays.
+	 * @throws IOException if the log can not be read.
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length < 1) {
+			System.err.println("Usage: GameReplay <log> [replays]");
+			return;
+		}
+		ByteBuffer log = ByteBuffer.wrap(Files.readAllBytes(Paths.get(args[0])));
+		int replays = (args.length > 1) ? Integer.parseInt(args[1]) : 1;
+		GameEngine engine = null;
+		long actions = 0;
+		long start = System.nanoTime();
+		for(int i = 0; i < replays; ++i) {
+			GameReplay replay = new GameReplay(log.duplicate());
+			engine = replay.newEngine();
+			actions += replay.replay(engine);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%d actions in %.3f s (%.0f actions/s)%n", actions, seconds, actions / seconds);
+		System.out.println("Final game: " + engine.getPuzzle() + ", sum " + engine.getCurrentSum()
+				+ ", level " + engine.getLevel() + (engine.isGameWon() ? ", won" : engine.isGameOver() ? ", lost" : ""));
+	}
+}
@@ -0,0 +1,365 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The game server hosts the games of many players over TCP, with the
+ * {@link GameProtocol}. Each connection is a session owning its own
+ * {@link GameEngine}, the headless rules of the game. The sessions are
+ * spread over a few event loops, each a thread with its own selector: a
+ * session is only touched by the thread of its loop, so its engine needs no
+ * synchronization, as in the game window.
+ * The connections are accepted on a thread of their own and handed to the
+ * loops in turn.
+ *
+ */
+public class GameServer implements Closeable {
+	/**
+	 * Port of the server when none is given
+	 */
+	public static final int DEFAULT_PORT = 7817;
+	/**
+	 * Pending output beyond which a session is not read until its client
+	 * reads its messages
+	 */
+	private static final int MAX_PENDING_OUTPUT = 1 << 16;
+	private static final int INPUT_SIZE = 1 << 10;
+
+	private final PuzzleSource puzzleSource;
+	private final ServerSocketChannel server;
+	private final Loop[] loops;
+	private final Thread acceptor;
+	private final AtomicInteger sessions = new AtomicInteger();
+	private final AtomicLong requests = new AtomicLong();
+	private volatile boolean closed;
+
+	/**
+	 * A connected player: its channel, its game and its pending input and output
+	 */
+	private static final class Session {
+		final SocketChannel channel;
+		final GameEngine engine;
+		final ByteBuffer input = ByteBuffer.allocate(INPUT_SIZE);
+		ByteBuffer output = ByteBuffer.allocate(256);
+
+		Session(SocketChannel channel, GameEngine engine) {
+			this.channel = channel;
+			this.engine = engine;
+		}
+
+		/**
+		 * @return the output buffer, with room for more bytes
+		 */
+		ByteBuffer output(int size) {
+			if(output.remaining() < size) {
+				ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * output.capacity(), output.position() + size));
+				output.flip();
+				larger.put(output);
+				output = larger;
+			}
+			return output;
+		}
+	}
+
+	/**
+	 * An event loop, serving its sessions on its own thread
+	 */
+	private final class Loop implements Runnable {
+		final Selector selector;
+		final Queue<SocketChannel> accepted = new ConcurrentLinkedQueue<SocketChannel>();
+
+		Loop() throws IOException {
+			selector = Selector.open();
+		}
+
+		/**
+		 * Hands a new connection to the loop, from the acceptor
+		 */
+		void add(SocketChannel channel) {
+			accepted.add(channel);
+			selector.wakeup();
+		}
+
+		@Override
+		public void run() {
+			try {
+				while(!closed) {
+					selector.select();
+					SocketChannel channel;
+					while((channel = accepted.poll()) != null)
+						open(channel);
+					Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+					while(keys.hasNext()) {
+						SelectionKey key = keys.next();
+						keys.remove();
+						serve(key);
+					}
+				}
+			} catch (IOException e) {
+				if(!closed)
+					System.err.println("Game server loop failed: " + e.getMessage());
+			} finally {
+				SocketChannel channel;
+				while((channel = accepted.poll()) != null)
+					closeQuietly(channel);
+				for(SelectionKey key : selector.keys())
+					close(key);
+				try {
+					selector.close();
+				} catch (IOException e) {
+					// The loop is over
+				}
+			}
+		}
+
+		/**
+		 * Starts the session of a new connection with a new game
+		 */
+		private void open(SocketChannel channel) {
+			SelectionKey key = null;
+			try {
+				channel.configureBlocking(false);
+				channel.socket().setTcpNoDelay(true);
+				Session session = new Session(channel, new GameEngine(puzzleSource, ThreadLocalRandom.current().nextLong()));
+				GameProtocol.writeGame(session.output(GameProtocol.gameFrameSize(session.engine)), session.engine);
+				key = channel.register(selector, SelectionKey.OP_READ, session);
+				sessions.incrementAndGet();
+				flush(key, session);
+			} catch (IOException e) {
+				if(key != null)
+					close(key);
+				else
+					closeQuietly(channel);
+			}
+		}
+
+		/**
+		 * Reads the requests of a session and writes its pending messages
+		 */
+		private void serve(SelectionKey key) {
+			Session session = (Session) key.attachment();
+			try {
+				if(key.isReadable()) {
+					if(session.channel.read(session.input) < 0) {
+						close(key);
+						return;
+					}
+					session.input.flip();
+					while(session.input.remaining() >= GameProtocol.REQUEST_SIZE)
+						if(!handle(session, session.input.get(), session.input.getShort() & 0xFFFF)) {
+							close(key);
+							return;
+						}
+					session.input.compact();
+				}
+				flush(key, session);
+			} catch (IOException e) {
+				close(key);
+			}
+		}
+
+		/**
+		 * Writes the pending messages of a session, and waits for the channel
+		 * to be writable if they could not all be written
+		 */
+		private void flush(SelectionKey key, Session session) throws IOException {
+			ByteBuffer output = session.output;
+			output.flip();
+			session.channel.write(output);
+			output.compact();
+			int pending = output.position();
+			// A client that does not read its messages is not read either
+			key.interestOps(((pending < MAX_PENDING_OUTPUT) ? SelectionKey.OP_READ : 0)
+					| ((pending > 0) ? SelectionKey.OP_WRITE : 0));
+		}
+
+		/**
+		 * Ends the session of a key, once
+		 */
+		private void close(SelectionKey key) {
+			if(!key.channel().isOpen())
+				return;
+			key.cancel();
+			closeQuietly(key.channel());
+			sessions.decrementAndGet();
+		}
+	}
+
+	private static void closeQuietly(Closeable channel) {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// Already lost
+		}
+	}
+
+	/**
+	 * Constructor, binding the server
+	 * @param address The address of the server (port 0 for any free port).
+	 * @param loopCount The number of event loops.
+	 * @param puzzleSource The source of the puzzles of the games.
+	 * @throws IOException if the server can not be bound.
+	 */
+	public GameServer(InetSocketAddress address, int loopCount, PuzzleSource puzzleSource) throws IOException {
+		if(puzzleSource == null)
+			throw new IllegalArgumentException("Should provide a valid PuzzleSource!");
+		if(loopCount < 1)
+			throw new IllegalArgumentException("Should run at least one loop: " + loopCount);
+		this.puzzleSource = puzzleSource;
+		this.loops = new Loop[loopCount];
+		for(int i = 0; i < loopCount; ++i)
+			loops[i] = new Loop();
+		this.server = ServerSocketChannel.open();
+		server.bind(address, 1024);
+		this.acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				accept();
+			}
+		}, "game-server-acceptor");
+	}
+
+	/**
+	 * Starts accepting and serving the players
+	 */
+	public void start() {
+		for(int i = 0; i < loops.length; ++i) {
+			Thread thread = new Thread(loops[i], "game-server-loop-" + i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+		acceptor.start();
+	}
+
+	/**
+	 * Accepts the connections and hands them to the loops in turn, on the acceptor thread
+	 */
+	private void accept() {
+		int next = 0;
+		while(!closed) {
+			try {
+				SocketChannel channel = server.accept();
+				loops[next].add(channel);
+				next = (next + 1) % loops.length;
+			} catch (ClosedChannelException e) {
+				break;
+			} catch (IOException e) {
+				if(!closed)
+					System.err.println("Could not accept a player: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Applies a request to the game of a session and queues its answer
+	 * @return False if the request is invalid.
+	 */
+	private boolean handle(Session session, byte action, int position) {
+		requests.incrementAndGet();
+		GameEngine engine = session.engine;
+		boolean accepted;
+		switch(action) {
+		case GameProtocol.CLICK:
+			accepted = engine.clickTile(position);
+			break;
+		case GameProtocol.PAIR:
+			accepted = engine.selectPair(position);
+			break;
+		case GameProtocol.RESET:
+			accepted = engine.resetGame();
+			break;
+		case GameProtocol.UNDO:
+			accepted = engine.undo();
+			break;
+		case GameProtocol.REDO:
+			accepted = engine.redo();
+			break;
+		case GameProtocol.NEXT:
+			if(!engine.nextGame()) {
+				accepted = false;
+				break;
+			}
+			GameProtocol.writeGame(session.output(GameProtocol.gameFrameSize(engine)), engine);
+			return true;
+		case GameProtocol.ARCADE:
+			engine.arcadeGame();
+			GameProtocol.writeGame(session.output(GameProtocol.gameFrameSize(engine)), engine);
+			return true;
+		case GameProtocol.RESTART:
+			engine.restartGame();
+			GameProtocol.writeGame(session.output(GameProtocol.gameFrameSize(engine)), engine);
+			return true;
+		default:
+			return false;
+		}
+		GameProtocol.writeUpdate(session.output(GameProtocol.FRAME_HEADER + GameProtocol.UPDATE_SIZE), engine, accepted);
+		return true;
+	}
+
+	/**
+	 * @return the port of the server
+	 */
+	public int getPort() {
+		return server.socket().getLocalPort();
+	}
+
+	/**
+	 * @return the number of connected players
+	 */
+	public int getSessionCount() {
+		return sessions.get();
+	}
+
+	/**
+	 * @return the number of requests served
+	 */
+	public long getRequestCount() {
+		return requests.get();
+	}
+
+	/**
+	 * Stops accepting players and closes every session
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		try {
+			server.close();
+		} catch (IOException e) {
+			// Not accepting anymore
+		}
+		for(Loop loop : loops)
+			loop.selector.wakeup();
+	}
+
+	/**
+	 * Runs a server until the process is stopped
+	 * @param args The port ({@link #DEFAULT_PORT} by default) and the number
+	 * of event loops (one per core by default).
+	 * @throws IOException if the server can not be bound.
+	 * @throws InterruptedException if interrupted while serving.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		int loops = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		GameServer server = new GameServer(new InetSocketAddress(port), loops, new PuzzleGenerator());
+		server.start();
+		System.out.println("Serving games on port " + server.getPort() + " with " + loops + " loops");
+		while(true) {
+			Thread.sleep(10000);
+			System.out.println(server.getSessionCount() + " players, " + server.getRequestCount() + " requests");
+		}
+	}
+}
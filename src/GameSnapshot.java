@@ -0,0 +1,247 @@
+import java.util.Arrays;
+
+/**
+ * A game snapshot is an immutable copy of the state of a {@link GameEngine}
+ * at one moment: the puzzle, the mode and level, the groups of the user and
+ * the status of the game. The {@link GameModel} publishes a new snapshot
+ * after every change, so any thread can read a consistent state of the game
+ * without locks.
+ * The groups are stored in chunks of 64 tiles shared between successive
+ * snapshots: a change copies the chunk index and the chunks of the changed
+ * tiles only, and a chunk that was never written stands for tiles without
+ * a group.
+ *
+ */
+public final class GameSnapshot {
+	private static final int CHUNK_BITS = 6;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private final long version;
+	private final Puzzle puzzle;
+	private final boolean arcadeEnabled;
+	private final int level;
+	private final int currentSum;
+	private final int clickedCounter;
+	private final int groupCount;
+	private final boolean gameOver;
+	private final boolean gameWon;
+	private final int resetCounter;
+	// Group id of each tile, and packed group of each id, in chunks
+	private final int[][] groupIds;
+	private final int[][] groups;
+
+	private GameSnapshot(long version, GameEngine engine, int[][] groupIds, int[][] groups) {
+		this.version = version;
+		this.puzzle = engine.getPuzzle();
+		this.arcadeEnabled = engine.isArcadeEnabled();
+		this.level = engine.getLevel();
+		this.currentSum = engine.getCurrentSum();
+		this.clickedCounter = engine.getClickedCounter();
+		this.groupCount = engine.getGroupCount();
+		this.gameOver = engine.isGameOver();
+		this.gameWon = engine.isGameWon();
+		this.resetCounter = engine.getResetCounter();
+		this.groupIds = groupIds;
+		this.groups = groups;
+	}
+
+	/**
+	 * Takes a snapshot of the whole state of an engine
+	 * @param engine The engine.
+	 * @param version The version of the snapshot.
+	 * @return The snapshot.
+	 */
+	public static GameSnapshot of(GameEngine engine, long version) {
+		int tiles = engine.getNumberOfTiles();
+		int[][] groupIds = new int[chunkCount(tiles)][];
+		int[][] groups = new int[groupIds.length][];
+		// Only the chunks of the tiles in a group are written
+		for(int i = 0; i < tiles; ++i) {
+			int id = engine.groupIdAt(i);
+			if(id >= 0) {
+				set(groupIds, null, i, id);
+				set(groups, null, id, engine.getGroup(id));
+			}
+		}
+		return new GameSnapshot(version, engine, groupIds, groups);
+	}
+
+	/**
+	 * Takes the next snapshot of an engine, after a change of the groups of
+	 * a range of tiles. The engine must still play the game of this snapshot.
+	 * @param engine The engine.
+	 * @param firstTile The first tile whose group changed.
+	 * @param lastTile The last tile whose group changed.
+	 * @return The snapshot, one version after this one.
+	 */
+	public GameSnapshot update(GameEngine engine, int firstTile, int lastTile) {
+		int[][] nextIds = groupIds.clone();
+		int[][] nextGroups = groups.clone();
+		for(int i = firstTile; i <= lastTile; ++i) {
+			int id = engine.groupIdAt(i);
+			set(nextIds, groupIds, i, id);
+			if(id >= 0)
+				set(nextGroups, groups, id, engine.getGroup(id));
+		}
+		return new GameSnapshot(version + 1, engine, nextIds, nextGroups);
+	}
+
+	private static int chunkCount(int length) {
+		return (length + CHUNK_MASK) >>> CHUNK_BITS;
+	}
+
+	/**
+	 * Writes a value in chunks, copying the chunk on its first write
+	 * @param chunks The chunks being written.
+	 * @param shared The chunks of the previous snapshot, or null.
+	 * @param index The index of the value.
+	 * @param value The value.
+	 */
+	private static void set(int[][] chunks, int[][] shared, int index, int value) {
+		int c = index >>> CHUNK_BITS;
+		int[] chunk = chunks[c];
+		if(chunk == null || (shared != null && chunk == shared[c])) {
+			int[] copy = new int[CHUNK_SIZE];
+			if(chunk == null)
+				Arrays.fill(copy, -1);
+			else
+				System.arraycopy(chunk, 0, copy, 0, CHUNK_SIZE);
+			chunks[c] = chunk = copy;
+		}
+		chunk[index & CHUNK_MASK] = value;
+	}
+
+	private static int get(int[][] chunks, int index) {
+		int[] chunk = chunks[index >>> CHUNK_BITS];
+		return (chunk == null) ? -1 : chunk[index & CHUNK_MASK];
+	}
+
+	/**
+	 * @return the version of the snapshot, increased by every change of the game
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return the puzzle being played
+	 */
+	public Puzzle getPuzzle() {
+		return puzzle;
+	}
+
+	/**
+	 * @return the goal of the puzzle
+	 */
+	public int getGoal() {
+		return puzzle.getGoal();
+	}
+
+	/**
+	 * @return the number of tiles (digits) of the puzzle
+	 */
+	public int getNumberOfTiles() {
+		return puzzle.getDigitCount();
+	}
+
+	/**
+	 * @param position The position of the tile.
+	 * @return the digit of the tile
+	 */
+	public int getDigit(int position) {
+		return puzzle.getDigit(position);
+	}
+
+	/**
+	 * @return the digits of the puzzle as a string
+	 */
+	public String getNumberSuite() {
+		int tiles = getNumberOfTiles();
+		StringBuilder sb = new StringBuilder(tiles);
+		for(int i = 0; i < tiles; ++i)
+			sb.append((char) ('0' + puzzle.getDigit(i)));
+		return sb.toString();
+	}
+
+	/**
+	 * @param position The position of the tile.
+	 * @return the id of the group of the tile, or -1 if it is not in a group
+	 */
+	public int groupIdAt(int position) {
+		return get(groupIds, position);
+	}
+
+	/**
+	 * @param position The position of the tile.
+	 * @return the packed group of the tile, or {@link Group#EMPTY} if it is not in a group
+	 */
+	public int groupAt(int position) {
+		int id = groupIdAt(position);
+		return (id < 0) ? Group.EMPTY : get(groups, id);
+	}
+
+	/**
+	 * @param position The position of the tile.
+	 * @return whether the tile has been clicked
+	 */
+	public boolean isClicked(int position) {
+		return groupIdAt(position) >= 0;
+	}
+
+	/**
+	 * @return the number of groups selected by the user
+	 */
+	public int getGroupCount() {
+		return groupCount;
+	}
+
+	/**
+	 * @return the number of tiles clicked by the user
+	 */
+	public int getClickedCounter() {
+		return clickedCounter;
+	}
+
+	/**
+	 * @return the sum of the groups selected by the user
+	 */
+	public int getCurrentSum() {
+		return currentSum;
+	}
+
+	/**
+	 * @return whether arcade mode is enabled
+	 */
+	public boolean isArcadeEnabled() {
+		return arcadeEnabled;
+	}
+
+	/**
+	 * @return the current arcade level
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * @return whether every tile has been clicked
+	 */
+	public boolean isGameOver() {
+		return gameOver;
+	}
+
+	/**
+	 * @return whether the game has been won
+	 */
+	public boolean isGameWon() {
+		return gameWon;
+	}
+
+	/**
+	 * @return the number of resets in the current game
+	 */
+	public int getResetCounter() {
+		return resetCounter;
+	}
+}
@@ -1,12 +1,17 @@
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.Observable;
-import java.util.Observer;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
 
+import javax.swing.AbstractAction;
 import javax.swing.BoxLayout;
 import javax.swing.JButton;
+import javax.swing.JComponent;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JToggleButton;
+import javax.swing.KeyStroke;
 import javax.swing.Timer;
 
 /**
@@ -14,12 +19,16 @@ import javax.swing.Timer;
  * and the user input (actions from selections, clicks, etc.).
  *
  */
-public class GameViewController extends JPanel implements Observer{
+public class GameViewController extends JPanel implements GameListener{
 
 	/**
 	 * 
 	 */
 	private static final long serialVersionUID = 6373313186026779282L;
+	/**
+	 * Period of the polling of the clock, in milliseconds
+	 */
+	private static final int CLOCK_PERIOD = 100;
 
 	/**
 	 * Instance of the game (logic, state, etc.)
@@ -27,21 +36,23 @@ public class GameViewController extends JPanel implements Observer{
 	private GameModel gameModel;
 
 	/**
-	 * A single tile panel displays all the tiles of the game
+	 * A single tile panel displays all the tiles of the game: either a
+	 * {@link TilePanel} or a {@link BoardPanel}
 	 */
-	private TilePanel tilePanel;
+	private JComponent tilePanel;
+	private boolean boardRenderer;
 	private JPanel bottomPanel;
 	private JPanel modePanel;
+	private JLabel goalLabel;
 	private JLabel currentSumLabel;
-	// Initialize timer attributes
+	private JLabel hintLabel;
+	// Shows the next move of the solution in the hint label, off by default
+	private JToggleButton hintButton;
+	private JButton arcadeButton;
+	private JButton restartButton;
+	// Displays the clock of the model, polled by a single timer
 	private Timer timer;
-	private int counter;
-	private JLabel timerLabel;
-	private double minutes;
-	private double seconds;
-	private String formattedMinutes;
-	private String formattedSeconds;
-	private String formattedTime;
+	private ClockLabel timerLabel;
 	// Initialize reset counter attributes
 	private JLabel resetCounterNumber;
 	// Arcade Labels
@@ -49,18 +60,17 @@ public class GameViewController extends JPanel implements Observer{
 	private JLabel level;
 	
 	/**
-	 * Initializes game model with starting values for attributes
+	 * Creates the components of the view. They are created once and
+	 * bound to each new game by {@link #bindGameModel()}.
 	 */
-	private void initGameModel() {
-		// Set static counters to 0
-		currentMode = new JLabel((gameModel.arcadeEnabled) ? "Mode: Arcade" : "Mode: Training");
-		gameModel.level = gameModel.level;
-		level = new JLabel("Level: "+Integer.toString(gameModel.level));
-		gameModel.clickedCounter = 0;
-		gameModel.currentSum = 0;
-		this.counter = 0;
+	private void initComponents() {
 		// Create and add panels
-		tilePanel = new TilePanel(gameModel);
+		currentMode = new JLabel();
+		level = new JLabel();
+		// The board scrolls when the game has too many tiles to fit
+		tilePanel = boardRenderer ? new JScrollPane(new BoardPanel(gameModel),
+				JScrollPane.VERTICAL_SCROLLBAR_NEVER, JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED)
+				: new TilePanel(gameModel);
 		this.add(tilePanel);		
 		bottomPanel = new JPanel();
 		this.add(bottomPanel);
@@ -73,80 +83,155 @@ public class GameViewController extends JPanel implements Observer{
 		
 		
 		// Adding all the other required UI components (labels, buttons, etc.)
-		int currentGoal = this.gameModel.goal;
-		JLabel goalLabel = new JLabel("Goal: " + currentGoal);
-		currentSumLabel = new JLabel("Current sum: " + gameModel.currentSum);
+		goalLabel = new JLabel();
+		currentSumLabel = new JLabel();
+		hintLabel = new JLabel();
 		JButton nextButton = new JButton("NEXT");
 		JButton resetButton = new JButton("RESET");
-		JButton arcadeButton = new JButton((gameModel.arcadeEnabled) ? "TRAINING" : "ARCADE");
-		JButton restartButton = new JButton("RESTART");
+		JButton undoButton = new JButton("UNDO");
+		JButton redoButton = new JButton("REDO");
+		hintButton = new JToggleButton("HINT");
+		arcadeButton = new JButton();
+		restartButton = new JButton("RESTART");
 		// Timer component
-		timerLabel = new JLabel("Time elapsed: 00:00");
+		timerLabel = new ClockLabel();
 		// Reset counter
-		resetCounterNumber = new JLabel("Resets: "+ gameModel.resetCounter);
-		// Instantiate timer and assign ActionListener to it
-		timer = new Timer(1000, new ActionListener() {
+		resetCounterNumber = new JLabel();
+		// The clock is polled more often than it changes, so the label
+		// follows it within a tenth of a second whatever the load
+		timer = new Timer(CLOCK_PERIOD, new ActionListener() {
 			@Override
 			public void actionPerformed(ActionEvent e) {
-				// Stores minutes and seconds in a variable
-				minutes = Math.floor(counter / 60F);
-				seconds = Math.floor(counter - minutes * 60);
-				// Formats minutes and seconds properly for each possible case
-				formattedMinutes = ((int)minutes >= 10) ? String.valueOf((int)minutes) : "0"+String.valueOf((int)minutes);
-				formattedSeconds = ((int)seconds >= 10) ? String.valueOf((int)seconds) : "0"+String.valueOf((int)seconds);
-				// Formats timer numbers
-				formattedTime = formattedMinutes+":"+formattedSeconds;
-				// Sets label text to timer
-				timerLabel.setText("Time elapsed: "+formattedTime);
-				// Only increment timer if game is not over
-				if (!gameModel.gameOver)
-					counter++;
+				timerLabel.show(gameModel.getClock().getElapsedMillis());
 			}
-			
 		});
+		timer.start();
 		
 		// Set up the listeners for the buttons
 		setupListeners(nextButton, resetButton, arcadeButton, restartButton, gameModel);
+		setupHistoryListeners(undoButton, redoButton);
+		hintButton.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				hintLabel.setText(hintText(gameModel.getHint()));
+			}
+		});
 		
 		// Add components to the main panels
 		// Goal labels
 		infoPanel.add(goalLabel);
 		infoPanel.add(currentSumLabel);
+		infoPanel.add(hintLabel);
 		// Current mode
 		modePanel.add(currentMode);
 		// Buttons
+		buttonPanel.add(undoButton);
+		buttonPanel.add(redoButton);
+		buttonPanel.add(hintButton);
 		buttonPanel.add(resetButton);
 		buttonPanel.add(nextButton);
 		buttonPanel.add(arcadeButton);
-		// Add restart button only if in arcade mode
-		if(gameModel.arcadeEnabled)
-			buttonPanel.add(restartButton);
+		// The restart button is only visible in arcade mode
+		buttonPanel.add(restartButton);
 		// Timer label
 		bottomPanel.add(timerLabel);
 		// Reset counter
 		bottomPanel.add(resetCounterNumber);
-		// Add level label only if in arcade mode
-		if(gameModel.arcadeEnabled)
-			bottomPanel.add(level);
-		// Start the timer
-		timer.start();
+		// The level label is only visible in arcade mode
+		bottomPanel.add(level);
+	}
+	
+	/**
+	 * Binds the components of the view to the current game of the model
+	 * and its clock
+	 */
+	private void bindGameModel() {
+		boolean arcade = gameModel.isArcadeEnabled();
+		currentMode.setText(arcade ? "Mode: Arcade" : "Mode: Training");
+		level.setText("Level: "+Integer.toString(gameModel.getLevel()));
+		level.setVisible(arcade);
+		arcadeButton.setText(arcade ? "TRAINING" : "ARCADE");
+		restartButton.setVisible(arcade);
+		goalLabel.setText("Goal: " + gameModel.getGoal());
+		currentSumLabel.setText("Current sum: " + gameModel.getCurrentSum());
+		resetCounterNumber.setText("Resets: "+ gameModel.getResetCounter());
+		hintLabel.setText("");
+		timerLabel.show(gameModel.getClock().getElapsedMillis());
 	}
 	
 	/**
 	 * Constructor for the GameViewController
 	 */
 	public GameViewController() {
-		gameModel = new GameModel();
-		gameModel.addObserver(this);
+		this(new GameModel());
+	}
+	
+	/**
+	 * Constructor for the GameViewController
+	 * @param gameModel the model to handle
+	 */
+	public GameViewController(GameModel gameModel) {
+		this(gameModel, false);
+	}
+	
+	/**
+	 * Constructor for the GameViewController
+	 * @param gameModel the model to handle
+	 * @param boardRenderer True to paint the tiles as a single scrolling
+	 * component (a {@link BoardPanel}), false for a component per tile.
+	 */
+	public GameViewController(GameModel gameModel, boolean boardRenderer) {
+		if (gameModel == null)
+			throw new IllegalArgumentException("Should provide a valid instance of GameModel!");
+		this.gameModel = gameModel;
+		this.boardRenderer = boardRenderer;
+		gameModel.subscribe(this, GameModel.MessCode.NEW, GameModel.MessCode.ARCADE,
+				GameModel.MessCode.RESTART, GameModel.MessCode.RESET, GameModel.MessCode.SUMCHANGED,
+				GameModel.MessCode.HINT);
 		// The layout defines how components are displayed
 		// (here, stacked along the Y axis)
 		setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
 		
-		// Initialize the game model
-		initGameModel();
+		// Create the view and bind it to the game model
+		initComponents();
+		bindGameModel();
+		// Tell the user whether the goal can still be reached,
+		// the next move is only shown on demand
+		gameModel.setHintsEnabled(true);
 		
 	}
 	
+	/**
+	 * Sets up the undo and redo buttons, and their shortcuts (Ctrl+Z, and
+	 * Ctrl+Y or Ctrl+Shift+Z)
+	 * @param undoButton The undo button
+	 * @param redoButton The redo button
+	 */
+	private void setupHistoryListeners(JButton undoButton, JButton redoButton) {
+		AbstractAction undo = new AbstractAction() {
+			private static final long serialVersionUID = 1L;
+
+			public void actionPerformed(ActionEvent e) {
+				gameModel.undo();
+			}
+		};
+		AbstractAction redo = new AbstractAction() {
+			private static final long serialVersionUID = 1L;
+
+			public void actionPerformed(ActionEvent e) {
+				gameModel.redo();
+			}
+		};
+		undoButton.addActionListener(undo);
+		redoButton.addActionListener(redo);
+		getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK), "undo");
+		getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK), "redo");
+		getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(KeyEvent.VK_Z,
+				InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK), "redo");
+		getActionMap().put("undo", undo);
+		getActionMap().put("redo", redo);
+	}
+	
 	/**
 	 * Method that sets up listeners for the buttons
 	 * @param nextButton The next game button
@@ -168,7 +253,7 @@ public class GameViewController extends JPanel implements Observer{
 		resetButton.addActionListener(new ActionListener(){
 			public void actionPerformed(ActionEvent e) {
 				gameModel.resetGame();
-				resetCounterNumber.setText("Resets: "+Integer.toString(gameModel.resetCounter));
+				resetCounterNumber.setText("Resets: "+Integer.toString(gameModel.getResetCounter()));
 			}
 		});
 		
@@ -189,45 +274,52 @@ public class GameViewController extends JPanel implements Observer{
 	
 
 	/** 
-	 * This method is called when the observer (GameModel)
-	 * calls setChanged() and notifyObservers().
+	 * This method is called when the GameModel posts an event
+	 * this view subscribed to.
 	 * USE THIS METHOD TO UPDATE THE VIEW IN ACCORDANCE TO THE MODEL STATE. 
 	 * */
 	@Override
-	public void update(Observable o, Object arg) {
-		if(!(arg instanceof GameModel.MessCode))
-			return;
-		GameModel.MessCode code = (GameModel.MessCode) arg;
+	public void gameChanged(GameEvent event) {
+		GameModel.MessCode code = event.getCode();
 		if(code==GameModel.MessCode.NEW || code==GameModel.MessCode.ARCADE || 
 				code ==GameModel.MessCode.RESTART) {
-			if(code==GameModel.MessCode.ARCADE)
-				// Sets or unsets arcade mode
-				gameModel.arcadeEnabled = !gameModel.arcadeEnabled;
-			if(code==GameModel.MessCode.RESTART)
-				gameModel.level = 1;
-			// Reset all the elements of the game
-			this.remove(tilePanel);
-			this.remove(bottomPanel);
-			this.remove(modePanel);
-			this.timer.stop();
-			this.initGameModel();
+			// Bind the elements of the view to the new game,
+			// the tile panel rebinds its tiles on its own
+			this.bindGameModel();
 			// Update the view
-			this.repaint();
 			this.revalidate();
+			this.repaint();
 		}
 		if(code==GameModel.MessCode.RESET){
 			// The game has been reset. Update information of the game view
 			// in accordance to the gameModel
-			gameModel.userGroups.clear();
-			gameModel.clickedCounter = 0;
-			gameModel.sumChanged();
-			this.currentSumLabel.setText("Current sum: "+Integer.toString(gameModel.currentSum));
+			this.currentSumLabel.setText("Current sum: "+Integer.toString(event.getNewSum()));
 
 		}
 		else if(code==GameModel.MessCode.SUMCHANGED){
 			// The current sum has changed, Update the view accordingly.
-			this.currentSumLabel.setText("Current sum: "+Integer.toString(gameModel.currentSum));
+			this.currentSumLabel.setText("Current sum: "+Integer.toString(event.getNewSum()));
+		}
+		else if(code==GameModel.MessCode.HINT){
+			// The hint engine analysed the latest selection
+			this.hintLabel.setText(hintText(gameModel.getHint()));
 		}
 	}
 	
+	/**
+	 * Describes a hint to the user. The move of the hint is only described
+	 * when the hint button is selected.
+	 * @param hint The hint.
+	 * @return The text of the hint label.
+	 */
+	private String hintText(Hint hint) {
+		if(hint.getStatus() == Hint.Status.UNSOLVABLE)
+			return "Hint: the goal is out of reach";
+		if(!hint.hasMove() || !hintButton.isSelected())
+			return "";
+		// Tiles are numbered from 1 for the user
+		int tile = hint.getFirstTile() + 1;
+		return (hint.getLength() == 2) ? "Hint: pair tiles " + tile + "-" + (tile + 1) : "Hint: click tile " + tile;
+	}
+	
 }
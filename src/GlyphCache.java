@@ -0,0 +1,111 @@
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class keeps the digits 0 to 9 rasterized as images, so the board
+ * draws a tile with a single image copy instead of laying out text.
+ * The images are cached per font size and colour; the least recently used
+ * sizes are dropped when the board is resized many times.
+ *
+ */
+public final class GlyphCache {
+	/**
+	 * Number of font size and colour combinations kept in the cache
+	 */
+	private static final int MAX_ENTRIES = 8;
+
+	private final Font font;
+	/**
+	 * The images of the ten digits, keyed by font size and colour
+	 */
+	private final Map<Long, BufferedImage[]> glyphs = new LinkedHashMap<Long, BufferedImage[]>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage[]> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+	/**
+	 * The size, colour and images of the last lookup, which a paint repeats
+	 * for every tile
+	 */
+	private int lastSize;
+	private int lastRgb;
+	private BufferedImage[] lastImages;
+
+	/**
+	 * Constructor
+	 * @param font The font of the digits, derived to every size requested.
+	 */
+	public GlyphCache(Font font) {
+		if(font == null)
+			throw new IllegalArgumentException("Should provide a valid Font!");
+		this.font = font;
+	}
+
+	/**
+	 * Gets the image of a digit, rasterizing the ten digits of this size
+	 * and colour on first use
+	 * @param digit The digit, between 0 and 9.
+	 * @param size The size of the font, in points.
+	 * @param colour The colour of the digit.
+	 * @return The image of the digit, on a transparent background.
+	 */
+	public BufferedImage getGlyph(int digit, int size, Color colour) {
+		int rgb = colour.getRGB();
+		if(lastImages == null || size != lastSize || rgb != lastRgb) {
+			Long key = ((long) size << 32) | (rgb & 0xFFFFFFFFL);
+			BufferedImage[] images = glyphs.get(key);
+			if(images == null) {
+				images = rasterize(size, colour);
+				glyphs.put(key, images);
+			}
+			lastSize = size;
+			lastRgb = rgb;
+			lastImages = images;
+		}
+		return lastImages[digit];
+	}
+
+	/**
+	 * Drops every cached image
+	 */
+	public void clear() {
+		glyphs.clear();
+		lastImages = null;
+	}
+
+	/**
+	 * Draws the ten digits in images just large enough to contain them
+	 */
+	private BufferedImage[] rasterize(int size, Color colour) {
+		Font sized = font.deriveFont((float) size);
+		// A scratch image is needed to measure the font
+		BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D sg = scratch.createGraphics();
+		FontMetrics metrics = sg.getFontMetrics(sized);
+		sg.dispose();
+		int height = Math.max(1, metrics.getAscent() + metrics.getDescent());
+		BufferedImage[] images = new BufferedImage[10];
+		for(int digit = 0; digit < images.length; ++digit) {
+			char c = (char) ('0' + digit);
+			int width = Math.max(1, metrics.charWidth(c));
+			BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g = image.createGraphics();
+			g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+			g.setFont(sized);
+			g.setColor(colour);
+			g.drawString(String.valueOf(c), 0, metrics.getAscent());
+			g.dispose();
+			images[digit] = image;
+		}
+		return images;
+	}
+}
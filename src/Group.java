@@ -1,109 +1,95 @@
 /**
  * This class represents a group of tiles. It has a value to add
- * towards the total sum of the game to work towards the goal. 
+ * towards the total sum of the game to work towards the goal.
+ * A group is a range of one or two consecutive tiles, packed in a single
+ * int so that groups can be stored in primitive arrays by the
+ * {@link GameEngine}.
  *
  */
-public class Group {
-	private Tile tile1;
-	private Tile tile2;
-	
+public final class Group {
 	/**
-	 * Constructor with only one tile. This will create
-	 * a group with a single tile.
-	 * @param tile The single tile to add to the group.
+	 * Value used for a group that no longer contains any tile
 	 */
-	public Group(Tile tile) {
-		this.tile1 = tile;
-		this.tile2 = null;
+	public static final int EMPTY = -1;
+
+	/**
+	 * Groups are only manipulated through the static methods of this class
+	 */
+	private Group() {
 	}
-	
+
 	/**
-	 * Constructor with two tiles. This will create
-	 * a group with two tiles.
-	 * @param tile1 The first tile to add to the group.
-	 * @param tile2 The second tile to add to the group.
+	 * Packs a group of tiles in an int.
+	 * @param start The position of the first tile of the group.
+	 * @param length The number of tiles in the group (1 or 2).
+	 * @return The packed group.
 	 */
-	public Group(Tile tile1, Tile tile2) {
-		this.tile1 = tile1;
-		this.tile2 = tile2;
+	public static int of(int start, int length) {
+		if(start < 0 || length < 1 || length > 2)
+			throw new IllegalArgumentException("Invalid group: " + start + "/" + length);
+		return (start << 1) | (length - 1);
 	}
-	
+
 	/**
-	 * Method to remove a tile from a group.
-	 * @param tileToRemove The tile to remove from the group
+	 * Gets the position of the first tile of a group.
+	 * @param group The packed group.
+	 * @return The position of the first tile.
 	 */
-	public void removeTile(Tile tileToRemove) {
-		if(tileToRemove != null) {
-			if(compareTiles(this.tile1, tileToRemove))
-				this.tile1 = null;
-			else if(compareTiles(this.tile2, tileToRemove))
-				this.tile2 = null;
-		}
+	public static int start(int group) {
+		return group >>> 1;
 	}
-	
+
 	/**
-	 * Compares two tiles with their position on the tile panel and
-	 * checks if they are the same.
-	 * @param tile1 The first tile to compare.
-	 * @param tile2 The second tile to compare.
-	 * @return True if they are equal or false if they are not.
+	 * Gets the number of tiles in a group.
+	 * @param group The packed group.
+	 * @return 1 for a single tile, 2 for a pair.
 	 */
-	private boolean compareTiles(Tile tile1, Tile tile2) {
-		boolean isEqual = false;
-		if (tile1 != null && tile2 != null) {
-			if(tile1.getPosition() == tile2.getPosition())
-				isEqual = true;
-		}
-		
-		return isEqual;
+	public static int length(int group) {
+		return (group & 1) + 1;
 	}
-	
+
 	/**
-	 * Checks if a tile is contained in this group.
-	 * @param tileToFind The tile to find in the group.
+	 * Checks if a tile is contained in a group.
+	 * @param group The packed group.
+	 * @param position The position of the tile to find.
 	 * @return True if the tile is in this group or false if it is not.
 	 */
-	public boolean contains(Tile tileToFind) {
-		boolean tileFound = false;
-		
-		if(tile1 != null) {
-			if(tile1.getPosition() == tileToFind.getPosition())
-				tileFound = true;
-		}
-		if(tile2 != null) {
-			if(tile2.getPosition() == tileToFind.getPosition())
-				tileFound = true;
-		}
-		return tileFound;
+	public static boolean contains(int group, int position) {
+		if(group == EMPTY)
+			return false;
+		int start = start(group);
+		return position >= start && position < start + length(group);
 	}
-	
+
 	/**
-	 * Checks if a group is empty. A group is empty when both its tiles are null.
-	 * @return True if the group is empty or false if it is not.
+	 * Removes a tile from a group. Removing one tile of a pair leaves
+	 * the other tile alone in the group.
+	 * @param group The packed group.
+	 * @param position The position of the tile to remove.
+	 * @return The remaining group, or {@link #EMPTY} if no tile is left.
 	 */
-	public boolean isEmpty() {
-		boolean isEmpty = false;
-		if(this.tile1 == null && this.tile2 == null)
-			isEmpty = true;	
-		return isEmpty;
+	public static int removeTile(int group, int position) {
+		if(!contains(group, position))
+			return group;
+		if(length(group) == 1)
+			return EMPTY;
+		int start = start(group);
+		return (position == start) ? of(start + 1, 1) : of(start, 1);
 	}
-	
+
 	/**
-	 * Returns the sum of the values for this group.
+	 * Returns the sum of the values for a group.
+	 * @param group The packed group.
+	 * @param digits The digits of the tiles.
 	 * @return The total sum of this group.
 	 */
-	public int getSum() {
-		int sum = 0;
+	public static int getSum(int group, byte[] digits) {
 		// Quick exit if group is empty
-		if(this.isEmpty())
+		if(group == EMPTY)
 			return 0;
-		if(this.tile1 == null)
-			sum = this.tile2.getValue();
-		else if(this.tile2 == null)
-			sum = this.tile1.getValue();
-		else
-			sum =  Integer.parseInt(Integer.toString(tile1.getValue()) + Integer.toString(tile2.getValue()));
-		
-		return sum;
+		int start = start(group);
+		if(length(group) == 1)
+			return digits[start];
+		return digits[start] * 10 + digits[start + 1];
 	}
 }
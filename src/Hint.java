@@ -0,0 +1,88 @@
+/**
+ * This class represents the answer of the {@link HintSolver} for a state of
+ * the game: whether the groups of the user can still be completed to reach
+ * the goal, and if so a move that keeps the goal reachable.
+ *
+ */
+public final class Hint {
+	/**
+	 * Whether the goal can still be reached
+	 */
+	public static enum Status{UNKNOWN, UNSOLVABLE, SOLVABLE};
+
+	/**
+	 * Answer given before any analysis, or for games too large to analyse
+	 */
+	public static final Hint UNKNOWN = new Hint(-1, Status.UNKNOWN, -1, 0);
+
+	private final long stamp;
+	private final Status status;
+	private final int firstTile;
+	private final int length;
+
+	/**
+	 * Constructor
+	 * @param stamp The stamp of the state of the game that was analysed.
+	 * @param status Whether the goal can still be reached.
+	 * @param firstTile The first tile of the move, or -1 if there is none.
+	 * @param length The number of tiles of the move (1 or 2), or 0 if there is none.
+	 */
+	public Hint(long stamp, Status status, int firstTile, int length) {
+		if(status == null)
+			throw new IllegalArgumentException("Should provide a valid Status!");
+		this.stamp = stamp;
+		this.status = status;
+		this.firstTile = firstTile;
+		this.length = length;
+	}
+
+	/**
+	 * @return the stamp of the state of the game that was analysed
+	 */
+	public long getStamp() {
+		return stamp;
+	}
+
+	/**
+	 * @return whether the goal can still be reached
+	 */
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return whether the goal can still be reached
+	 */
+	public boolean isSolvable() {
+		return status == Status.SOLVABLE;
+	}
+
+	/**
+	 * @return whether the hint suggests a move
+	 */
+	public boolean hasMove() {
+		return length > 0;
+	}
+
+	/**
+	 * @return the first tile of the suggested move, or -1 if there is none
+	 */
+	public int getFirstTile() {
+		return firstTile;
+	}
+
+	/**
+	 * @return the number of tiles of the suggested move: 1 to click the tile,
+	 * 2 to select it as a pair with the next one, 0 if there is no move
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	@Override
+	public String toString() {
+		if(!hasMove())
+			return "Hint[" + status + "]";
+		return "Hint[" + status + ", tiles " + firstTile + ".." + (firstTile + length - 1) + "]";
+	}
+}
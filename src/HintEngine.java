@@ -0,0 +1,84 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * The hint engine runs a {@link HintSolver} on a background thread, so the
+ * selections of the user never wait for a hint. The changes of the game are
+ * queued and applied in order; once the queue is empty, the hint for the
+ * latest state is computed and handed to the listener (on the background
+ * thread). Each change carries a stamp, given back with its hint, so the
+ * caller can recognize the hints of outdated states.
+ *
+ */
+public class HintEngine {
+	private final HintSolver solver = new HintSolver();
+	private final Consumer<Hint> listener;
+	private final ExecutorService executor;
+	/**
+	 * Number of changes queued and not applied yet
+	 */
+	private final AtomicInteger pending = new AtomicInteger();
+
+	/**
+	 * Constructor
+	 * @param listener Receives the hints, on the background thread.
+	 */
+	public HintEngine(Consumer<Hint> listener) {
+		if(listener == null)
+			throw new IllegalArgumentException("Should provide a valid listener!");
+		this.listener = listener;
+		this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "hint-engine");
+				// Hints never keep the game running
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Starts the analysis of a new game
+	 * @param stamp The stamp of the new state.
+	 * @param digits The digits of the game, which must not be modified afterwards.
+	 * @param goal The sum to reach.
+	 */
+	public void newGame(long stamp, byte[] digits, int goal) {
+		submit(stamp, () -> solver.newGame(digits, digits.length, goal));
+	}
+
+	/**
+	 * Records a selection of the user
+	 * @param stamp The stamp of the new state.
+	 * @param first The first tile whose group changed.
+	 * @param tileGroups The new group of each changed tile, which must not be modified afterwards.
+	 * @param currentSum The sum of the groups of the user after the selection.
+	 */
+	public void update(long stamp, int first, int[] tileGroups, int currentSum) {
+		submit(stamp, () -> solver.update(first, tileGroups, currentSum));
+	}
+
+	/**
+	 * Queues a change, and the computation of the hint if no other change follows it
+	 */
+	private void submit(long stamp, Runnable change) {
+		pending.incrementAndGet();
+		executor.execute(() -> {
+			change.run();
+			// Only the latest state deserves a hint
+			if(pending.decrementAndGet() == 0)
+				listener.accept(solver.hint(stamp));
+		});
+	}
+
+	/**
+	 * Stops the background thread. Changes still queued are dropped.
+	 */
+	public void close() {
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,173 @@
+import java.util.Arrays;
+
+/**
+ * The hint solver tells whether the groups selected by the user can still be
+ * completed into a solution, and suggests a move that keeps the goal
+ * reachable.
+ * Like the {@link Solver}, it uses dynamic programming, but from the end of
+ * the suite: for every position p, the sums reachable by grouping the free
+ * tiles from p to the end (the groups of the user being kept) are stored as
+ * a bit set. A selection only changes the rows of the tiles up to its last
+ * tile, so after a selection the rows are recomputed from there down to the
+ * first free tile, the other rows being kept. Since the user mostly selects
+ * tiles near the first free tile, a hint usually costs a few rows.
+ * An instance is not thread-safe; see {@link HintEngine} to run it in the
+ * background.
+ *
+ */
+public class HintSolver {
+	/**
+	 * Largest number of 64-bit words of the table (64 MB), games needing
+	 * more get {@link Hint#UNKNOWN} answers
+	 */
+	public static final long MAX_WORDS = 1L << 23;
+
+	private byte[] digits = new byte[0];
+	private int length;
+	private int goal;
+	/**
+	 * Group of each tile, packed with {@link Group#of(int, int)}, or {@link Group#EMPTY}
+	 */
+	private int[] groups = new int[0];
+	private int currentSum;
+	/**
+	 * Reachable sums from every position to the end, as bit sets of
+	 * {@link #words} words (the row of position p starts at p * words)
+	 */
+	private long[] suffixes = new long[0];
+	private int words;
+	private boolean tooLarge;
+	/**
+	 * The rows of the positions from validFrom to the end are up to date
+	 */
+	private int validFrom;
+	/**
+	 * Every tile before the frontier is in a group
+	 */
+	private int frontier;
+
+	/**
+	 * Starts the analysis of a new game, with no tile in a group
+	 * @param digits The digits of the game.
+	 * @param length The number of digits to use from the array.
+	 * @param goal The sum to reach.
+	 */
+	public void newGame(byte[] digits, int length, int goal) {
+		if(this.digits.length < length) {
+			this.digits = new byte[length];
+			this.groups = new int[length];
+		}
+		System.arraycopy(digits, 0, this.digits, 0, length);
+		Arrays.fill(groups, 0, length, Group.EMPTY);
+		this.length = length;
+		this.goal = goal;
+		this.currentSum = 0;
+		this.frontier = 0;
+		this.words = (Math.max(goal, 0) >>> 6) + 1;
+		long size = (long) (length + 1) * words;
+		this.tooLarge = size > MAX_WORDS;
+		if(tooLarge)
+			return;
+		if(suffixes.length < size)
+			suffixes = new long[(int) size];
+		// Grouping no tile at all: only the empty sum
+		int end = length * words;
+		Arrays.fill(suffixes, end, end + words, 0L);
+		suffixes[end] = 1L;
+		this.validFrom = length;
+	}
+
+	/**
+	 * Records a selection of the user
+	 * @param first The first tile whose group changed.
+	 * @param tileGroups The new group of each changed tile, from the first one,
+	 * packed with {@link Group#of(int, int)} or {@link Group#EMPTY}.
+	 * @param currentSum The sum of the groups of the user after the selection.
+	 */
+	public void update(int first, int[] tileGroups, int currentSum) {
+		if(first < 0 || first + tileGroups.length > length)
+			throw new IllegalArgumentException("Tiles out of the game: " + first + ".." + (first + tileGroups.length - 1));
+		System.arraycopy(tileGroups, 0, groups, first, tileGroups.length);
+		this.currentSum = currentSum;
+		// The rows up to the last changed tile depend on the changed groups
+		validFrom = Math.max(validFrom, first + tileGroups.length);
+		frontier = Math.min(frontier, first);
+	}
+
+	/**
+	 * Analyses the current groups of the user
+	 * @param stamp The stamp given to the hint.
+	 * @return The hint.
+	 */
+	public Hint hint(long stamp) {
+		if(tooLarge)
+			return new Hint(stamp, Hint.Status.UNKNOWN, -1, 0);
+		while(frontier < length && groups[frontier] != Group.EMPTY)
+			++frontier;
+		for(int p = validFrom - 1; p >= frontier; --p)
+			computeRow(p);
+		validFrom = Math.min(validFrom, frontier);
+
+		int remaining = goal - currentSum;
+		if(remaining < 0 || !isReachable(frontier, remaining))
+			return new Hint(stamp, Hint.Status.UNSOLVABLE, -1, 0);
+		if(frontier == length)
+			// Every tile is in a group and the goal is reached
+			return new Hint(stamp, Hint.Status.SOLVABLE, -1, 0);
+		// Pairs come first: they finish the game with fewer moves
+		if(frontier + 1 < length && groups[frontier + 1] == Group.EMPTY) {
+			int pair = digits[frontier] * 10 + digits[frontier + 1];
+			if(remaining >= pair && isReachable(frontier + 2, remaining - pair))
+				return new Hint(stamp, Hint.Status.SOLVABLE, frontier, 2);
+		}
+		return new Hint(stamp, Hint.Status.SOLVABLE, frontier, 1);
+	}
+
+	/**
+	 * Computes the reachable sums from a position, the rows after it being up to date
+	 */
+	private void computeRow(int p) {
+		int offset = p * words;
+		Arrays.fill(suffixes, offset, offset + words, 0L);
+		int group = groups[p];
+		if(group != Group.EMPTY) {
+			// The groups of the user are already counted in the current sum.
+			// A row starting inside a pair stays empty: no grouping starts there.
+			if(Group.start(group) == p)
+				System.arraycopy(suffixes, (p + Group.length(group)) * words, suffixes, offset, words);
+			return;
+		}
+		// The tile alone, or with the next one if it is free too
+		shiftOr(p + 1, digits[p], offset);
+		if(p + 1 < length && groups[p + 1] == Group.EMPTY)
+			shiftOr(p + 2, digits[p] * 10 + digits[p + 1], offset);
+		// Sums above the goal are useless
+		int bits = (goal & 63) + 1;
+		if(bits < 64)
+			suffixes[offset + words - 1] &= (1L << bits) - 1;
+	}
+
+	/**
+	 * Adds the sums of a row, shifted by a value, to the row at an offset
+	 */
+	private void shiftOr(int source, int shift, int offset) {
+		int wordShift = shift >>> 6;
+		int bitShift = shift & 63;
+		int from = source * words;
+		for(int w = words - 1 - wordShift; w >= 0; --w) {
+			long value = suffixes[from + w];
+			if(value == 0)
+				continue;
+			suffixes[offset + w + wordShift] |= value << bitShift;
+			if(bitShift != 0 && w + wordShift + 1 < words)
+				suffixes[offset + w + wordShift + 1] |= value >>> (64 - bitShift);
+		}
+	}
+
+	/**
+	 * @return whether the free tiles from a position can be grouped into a sum
+	 */
+	private boolean isReachable(int position, int sum) {
+		return sum <= goal && (suffixes[position * words + (sum >>> 6)] & (1L << sum)) != 0;
+	}
+}
@@ -0,0 +1,120 @@
+import java.util.Arrays;
+
+/**
+ * This class counts latencies (or any positive long values) in buckets of
+ * bounded relative width, like an HDR histogram: values below 128 have their
+ * own bucket, and every power of two above is split into 64 buckets, so a
+ * percentile is known within 1.6% whatever its magnitude, in a fixed table
+ * of about 3700 counters. Recording is a few arithmetic operations without
+ * allocation. An instance is not thread-safe: record on one histogram per
+ * thread and {@link #add(LatencyHistogram) add} them up.
+ *
+ */
+public class LatencyHistogram {
+	private static final int SUB_BITS = 6;
+	private static final int HALF = 1 << SUB_BITS;
+	private static final int BUCKETS = (64 - SUB_BITS + 1) * HALF;
+
+	private final long[] counts = new long[BUCKETS];
+	private long count;
+	private long total;
+	private long max;
+
+	/**
+	 * Records a value
+	 * @param value The value, negative values being counted as 0.
+	 */
+	public void record(long value) {
+		if(value < 0)
+			value = 0;
+		++counts[bucketOf(value)];
+		++count;
+		total += value;
+		if(value > max)
+			max = value;
+	}
+
+	/**
+	 * Adds the values recorded by another histogram to this one
+	 * @param other The other histogram.
+	 */
+	public void add(LatencyHistogram other) {
+		for(int i = 0; i < BUCKETS; ++i)
+			counts[i] += other.counts[i];
+		count += other.count;
+		total += other.total;
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * Forgets every recorded value
+	 */
+	public void clear() {
+		Arrays.fill(counts, 0L);
+		count = 0;
+		total = 0;
+		max = 0;
+	}
+
+	/**
+	 * Gets a percentile of the recorded values
+	 * @param percent The percentile, between 0 and 100.
+	 * @return The highest value of the bucket holding the percentile, at most
+	 * the largest recorded value, or 0 if nothing was recorded.
+	 */
+	public long getPercentile(double percent) {
+		if(count == 0)
+			return 0;
+		long rank = (long) Math.ceil(count * Math.min(Math.max(percent, 0), 100) / 100);
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; ++i) {
+			seen += counts[i];
+			if(seen >= Math.max(rank, 1))
+				return Math.min(highestValueOf(i), max);
+		}
+		return max;
+	}
+
+	/**
+	 * @return the number of recorded values
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the mean of the recorded values, or 0 if nothing was recorded
+	 */
+	public double getMean() {
+		return (count == 0) ? 0 : (double) total / count;
+	}
+
+	/**
+	 * @return the largest recorded value
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * @return the bucket of a value
+	 */
+	private static int bucketOf(long value) {
+		if(value < 2 * HALF)
+			return (int) value;
+		// Keep the SUB_BITS + 1 highest bits of the value
+		int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BITS - 1;
+		return shift * HALF + (int) (value >>> shift);
+	}
+
+	/**
+	 * @return the highest value counted in a bucket
+	 */
+	private static long highestValueOf(int bucket) {
+		if(bucket < 2 * HALF)
+			return bucket;
+		int shift = bucket / HALF - 1;
+		long lowest = (long) (bucket - shift * HALF) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,490 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The leaderboard keeps the best runs of the players: the arcade runs,
+ * ranked for each level reached by their total time then their resets, and
+ * the won training games. Each board keeps its best runs in a sorted array,
+ * so a run is ranked by a binary search.
+ * <p>
+ * Runs are appended to a log file mapped in memory, in records of
+ * {@link #RECORD_SIZE} bytes protected by a CRC: a run is written without a
+ * system call, and a record torn by a crash is ignored. Once enough runs
+ * were appended, the log is compacted to the runs of the boards, written
+ * aside and moved over the log, so opening the leaderboard only reads the
+ * best runs and the runs appended since, whatever the number of runs played.
+ * <p>
+ * The file holds a header (int magic, short version, padding up to a record)
+ * followed by the records (big-endian):
+ * <pre>
+ * long time, long millis, int resets, byte mode, byte level, 6 bytes of padding, int crc
+ * </pre>
+ *
+ */
+public class Leaderboard implements Closeable {
+	// Modes of the runs
+	public static final int ARCADE = 0;
+	public static final int TRAINING = 1;
+
+	public static final int DEFAULT_BOARD_SIZE = 100;
+	public static final int DEFAULT_COMPACT_AFTER = 1 << 16;
+	/**
+	 * Size of the header and of each record of the log
+	 */
+	public static final int RECORD_SIZE = 32;
+
+	private static final int MAGIC = 0x4D534C42;
+	private static final short VERSION = 1;
+	private static final int CRC_OFFSET = RECORD_SIZE - 4;
+	// The log is mapped by chunks of whole records (4096 runs)
+	private static final int CHUNK_SIZE = RECORD_SIZE << 12;
+
+	/**
+	 * Orders the runs of a board: the fastest first, then the fewest resets, then the oldest
+	 */
+	private static final Comparator<Run> ORDER = new Comparator<Run>() {
+		@Override
+		public int compare(Run a, Run b) {
+			if(a.millis != b.millis)
+				return Long.compare(a.millis, b.millis);
+			if(a.resets != b.resets)
+				return Integer.compare(a.resets, b.resets);
+			return Long.compare(a.time, b.time);
+		}
+	};
+
+	/**
+	 * A run of a player
+	 */
+	public static final class Run {
+		private final long time;
+		private final int mode;
+		private final int level;
+		private final long millis;
+		private final int resets;
+
+		/**
+		 * Constructor
+		 * @param time The end of the run, in milliseconds since the epoch.
+		 * @param mode The mode of the run ({@link Leaderboard#ARCADE} or {@link Leaderboard#TRAINING}).
+		 * @param level The level reached by an arcade run, 0 for a training game.
+		 * @param millis The time spent on the run, in milliseconds.
+		 * @param resets The number of resets in the run.
+		 */
+		public Run(long time, int mode, int level, long millis, int resets) {
+			this.time = time;
+			this.mode = mode;
+			this.level = level;
+			this.millis = millis;
+			this.resets = resets;
+		}
+
+		/**
+		 * @return the end of the run, in milliseconds since the epoch
+		 */
+		public long getTime() {
+			return time;
+		}
+
+		/**
+		 * @return the mode of the run
+		 */
+		public int getMode() {
+			return mode;
+		}
+
+		/**
+		 * @return the level reached by the run, 0 for a training game
+		 */
+		public int getLevel() {
+			return level;
+		}
+
+		/**
+		 * @return the time spent on the run, in milliseconds
+		 */
+		public long getMillis() {
+			return millis;
+		}
+
+		/**
+		 * @return the number of resets in the run
+		 */
+		public int getResets() {
+			return resets;
+		}
+
+		@Override
+		public String toString() {
+			return ((mode == ARCADE) ? "arcade level " + level : "training") + ": " + millis + " ms, "
+					+ resets + " resets";
+		}
+	}
+
+	private final Path file;
+	private final int boardSize;
+	private final int compactAfter;
+	/**
+	 * Best runs of each board, indexed by mode and level, and their number
+	 */
+	private final Run[][] boards = new Run[2 * (GameEngine.MAX_LEVEL + 1)][];
+	private final int[] sizes = new int[boards.length];
+	private final CRC32 crc = new CRC32();
+	private final byte[] record = new byte[RECORD_SIZE];
+	private FileChannel channel;
+	// Chunk of the log being appended, and its start in the file
+	private MappedByteBuffer chunk;
+	private long chunkStart;
+	private long recordCount;
+	private long appended;
+
+	/**
+	 * Constructor with the default sizes
+	 * @param file The file of the log.
+	 * @throws IOException if the file can not be opened or is not a leaderboard.
+	 */
+	public Leaderboard(Path file) throws IOException {
+		this(file, DEFAULT_BOARD_SIZE, DEFAULT_COMPACT_AFTER);
+	}
+
+	/**
+	 * Constructor
+	 * @param file The file of the log.
+	 * @param boardSize The number of runs kept by each board.
+	 * @param compactAfter The number of runs appended before the log is compacted.
+	 * @throws IOException if the file can not be opened or is not a leaderboard.
+	 */
+	public Leaderboard(Path file, int boardSize, int compactAfter) throws IOException {
+		if(file == null)
+			throw new IllegalArgumentException("Should provide a valid Path!");
+		if(boardSize < 1 || compactAfter < 1)
+			throw new IllegalArgumentException("Should keep at least one run and compact after at least one run");
+		this.file = file;
+		this.boardSize = boardSize;
+		this.compactAfter = compactAfter;
+		for(int i = 0; i < boards.length; ++i)
+			boards[i] = new Run[boardSize];
+		openLog();
+		// A log holding many more runs than the boards is compacted at once
+		if(appended >= compactAfter)
+			compact();
+	}
+
+	/**
+	 * Records a run
+	 * @param mode The mode of the run.
+	 * @param level The level reached by an arcade run, 0 for a training game.
+	 * @param millis The time spent on the run, in milliseconds.
+	 * @param resets The number of resets in the run.
+	 * @return The rank of the run in its board (0 for the best), or -1 if it
+	 * is not among the best runs.
+	 * @throws IOException if the run can not be written.
+	 */
+	public synchronized int record(int mode, int level, long millis, int resets) throws IOException {
+		Run run = new Run(System.currentTimeMillis(), mode, level, millis, resets);
+		board(mode, level);
+		append(run);
+		int rank = insert(run);
+		if(++appended >= compactAfter)
+			compact();
+		return rank;
+	}
+
+	/**
+	 * Gets the rank a run would have
+	 * @param mode The mode of the run.
+	 * @param level The level reached by the run.
+	 * @param millis The time spent on the run, in milliseconds.
+	 * @param resets The number of resets in the run.
+	 * @return The rank the run would have in its board (0 for the best), or
+	 * -1 if it would not be among the best runs.
+	 */
+	public synchronized int rankOf(int mode, int level, long millis, int resets) {
+		int board = board(mode, level);
+		// Ranked after the runs that tie with it, being the latest
+		int rank = upperBound(board, new Run(Long.MAX_VALUE, mode, level, millis, resets));
+		return (rank < boardSize) ? rank : -1;
+	}
+
+	/**
+	 * Gets the best runs of a board
+	 * @param mode The mode of the runs.
+	 * @param level The level reached by the runs.
+	 * @param count The maximum number of runs.
+	 * @return The best runs, the best first.
+	 */
+	public synchronized List<Run> getTop(int mode, int level, int count) {
+		int board = board(mode, level);
+		List<Run> top = new ArrayList<Run>();
+		for(int i = 0; i < Math.min(count, sizes[board]); ++i)
+			top.add(boards[board][i]);
+		return Collections.unmodifiableList(top);
+	}
+
+	/**
+	 * @param mode The mode of the runs.
+	 * @param level The level reached by the runs.
+	 * @return the best run of a board, or null
+	 */
+	public synchronized Run getBest(int mode, int level) {
+		int board = board(mode, level);
+		return (sizes[board] == 0) ? null : boards[board][0];
+	}
+
+	/**
+	 * @return the number of runs in the log
+	 */
+	public synchronized long getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * Writes the log to the disk
+	 */
+	public synchronized void flush() {
+		if(chunk != null)
+			chunk.force();
+	}
+
+	/**
+	 * Writes the log to the disk and closes it
+	 */
+	@Override
+	public synchronized void close() {
+		if(channel == null)
+			return;
+		flush();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// Every run is written
+		}
+		channel = null;
+		chunk = null;
+	}
+
+	/**
+	 * Rewrites the log with the runs of the boards only, aside, and moves it over the log
+	 * @throws IOException if the log can not be rewritten.
+	 */
+	public synchronized void compact() throws IOException {
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		try(FileChannel out = FileChannel.open(temporary, StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE << 8);
+			header(buffer);
+			for(int board = 0; board < boards.length; ++board)
+				for(int i = 0; i < sizes[board]; ++i) {
+					if(!buffer.hasRemaining())
+						write(out, buffer);
+					buffer.put(encode(boards[board][i]));
+				}
+			write(out, buffer);
+			out.force(true);
+		}
+		close();
+		try {
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+		for(int board = 0; board < boards.length; ++board)
+			sizes[board] = 0;
+		openLog();
+	}
+
+	private static void write(FileChannel out, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining())
+			out.write(buffer);
+		buffer.clear();
+	}
+
+	private static void header(ByteBuffer out) {
+		out.putInt(MAGIC);
+		out.putShort(VERSION);
+		out.position(out.position() + RECORD_SIZE - 6);
+	}
+
+	/**
+	 * Opens the log, reads its runs into the boards and maps its end
+	 */
+	private void openLog() throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		if(channel.size() == 0) {
+			ByteBuffer header = ByteBuffer.allocate(RECORD_SIZE);
+			header(header);
+			header.flip();
+			while(header.hasRemaining())
+				channel.write(header, header.position());
+			channel.force(true);
+		}
+		chunkStart = 0;
+		chunk = channel.map(FileChannel.MapMode.READ_WRITE, 0, CHUNK_SIZE);
+		if(chunk.getInt(0) != MAGIC || chunk.getShort(4) != VERSION) {
+			close();
+			throw new IOException(file + ": not a leaderboard");
+		}
+		chunk.position(RECORD_SIZE);
+		recordCount = 0;
+		appended = 0;
+		// The runs end at the first invalid record (never written, or torn)
+		while(true) {
+			if(!chunk.hasRemaining())
+				nextChunk();
+			chunk.get(record);
+			Run run = decode();
+			if(run == null) {
+				chunk.position(chunk.position() - RECORD_SIZE);
+				break;
+			}
+			insert(run);
+			++recordCount;
+		}
+		int kept = 0;
+		for(int size : sizes)
+			kept += size;
+		appended = Math.max(0, recordCount - kept);
+	}
+
+	/**
+	 * Maps the chunk following the current one, extending the file
+	 */
+	private void nextChunk() throws IOException {
+		chunkStart += CHUNK_SIZE;
+		chunk = channel.map(FileChannel.MapMode.READ_WRITE, chunkStart, CHUNK_SIZE);
+	}
+
+	/**
+	 * Appends a run to the log
+	 */
+	private void append(Run run) throws IOException {
+		if(channel == null)
+			throw new IOException(file + ": the leaderboard is closed");
+		if(!chunk.hasRemaining())
+			nextChunk();
+		chunk.put(encode(run));
+		++recordCount;
+	}
+
+	/**
+	 * Encodes a run in the scratch record
+	 */
+	private byte[] encode(Run run) {
+		ByteBuffer out = ByteBuffer.wrap(record);
+		out.putLong(run.time);
+		out.putLong(run.millis);
+		out.putInt(run.resets);
+		out.put((byte) run.mode);
+		out.put((byte) run.level);
+		out.putShort((short) 0);
+		out.putInt(0);
+		crc.reset();
+		crc.update(record, 0, CRC_OFFSET);
+		out.putInt((int) crc.getValue());
+		return record;
+	}
+
+	/**
+	 * Decodes the scratch record
+	 * @return The run, or null if the record is invalid.
+	 */
+	private Run decode() {
+		crc.reset();
+		crc.update(record, 0, CRC_OFFSET);
+		ByteBuffer in = ByteBuffer.wrap(record);
+		if(in.getInt(CRC_OFFSET) != (int) crc.getValue())
+			return null;
+		long time = in.getLong();
+		long millis = in.getLong();
+		int resets = in.getInt();
+		int mode = in.get();
+		int level = in.get();
+		if(mode < ARCADE || mode > TRAINING || level < 0 || level > GameEngine.MAX_LEVEL)
+			return null;
+		return new Run(time, mode, level, millis, resets);
+	}
+
+	/**
+	 * @return the index of the board of a mode and level
+	 */
+	private static int board(int mode, int level) {
+		if(mode < ARCADE || mode > TRAINING)
+			throw new IllegalArgumentException("Unknown mode: " + mode);
+		if(level < 0 || level > GameEngine.MAX_LEVEL)
+			throw new IllegalArgumentException("Level must be between 0 and " + GameEngine.MAX_LEVEL + ": " + level);
+		return mode * (GameEngine.MAX_LEVEL + 1) + level;
+	}
+
+	/**
+	 * Inserts a run in its board, if it is among the best runs
+	 * @return The rank of the run, or -1.
+	 */
+	private int insert(Run run) {
+		int board = board(run.mode, run.level);
+		int rank = upperBound(board, run);
+		if(rank >= boardSize)
+			return -1;
+		Run[] runs = boards[board];
+		int moved = Math.min(sizes[board], boardSize - 1) - rank;
+		System.arraycopy(runs, rank, runs, rank + 1, moved);
+		runs[rank] = run;
+		sizes[board] = Math.min(sizes[board] + 1, boardSize);
+		return rank;
+	}
+
+	/**
+	 * @return the number of runs of a board ranked before or tied with a run
+	 */
+	private int upperBound(int board, Run run) {
+		Run[] runs = boards[board];
+		int low = 0;
+		int high = sizes[board];
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			if(ORDER.compare(runs[middle], run) <= 0)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * Prints the best runs of every board
+	 * @param args The file of the leaderboard (leaderboard.bin by default) and
+	 * the number of runs printed per board (10).
+	 * @throws IOException if the leaderboard can not be read.
+	 */
+	public static void main(String[] args) throws IOException {
+		Path path = Paths.get((args.length > 0) ? args[0] : "leaderboard.bin");
+		int count = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+		try(Leaderboard leaderboard = new Leaderboard(path)) {
+			System.out.println(leaderboard.getRecordCount() + " runs in " + path);
+			for(int mode = ARCADE; mode <= TRAINING; ++mode)
+				for(int level = GameEngine.MAX_LEVEL; level >= 0; --level) {
+					List<Run> top = leaderboard.getTop(mode, level, count);
+					if(top.isEmpty())
+						continue;
+					System.out.println((mode == ARCADE) ? "Arcade, level " + level + ":" : "Training:");
+					for(int i = 0; i < top.size(); ++i)
+						System.out.printf("%4d. %8.3f s, %d resets%n", i + 1, top.get(i).getMillis() / 1000.0,
+								top.get(i).getResets());
+				}
+		}
+	}
+}
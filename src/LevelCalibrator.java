@@ -0,0 +1,205 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * The level calibrator measures the difficulty of the puzzles drawn with
+ * many parameters (count of numbers, probability of a two-digit number) by
+ * sampling and solving random puzzles on every core, then builds the
+ * {@link LevelTable} whose difficulty rises evenly from the first to the
+ * last arcade level.
+ * The difficulty of a puzzle is the information needed to find a solution:
+ * log2 of the number of ways to group its digits over its number of
+ * solutions, that is, how unlikely a random grouping wins. Besides the mean
+ * difficulty, the distribution of the number of solutions is reported, with
+ * the share of ambiguous puzzles (more than one solution).
+ *
+ */
+public class LevelCalibrator {
+	/**
+	 * Largest count of numbers tried
+	 */
+	public static final int MAX_NUMBER_COUNT = 8;
+	/**
+	 * Step between the probabilities tried
+	 */
+	public static final double PROBA_STEP = 0.05;
+
+	/**
+	 * Number of ways to group n digits into groups of one or two digits
+	 */
+	private static final double[] GROUPINGS = new double[2 * MAX_NUMBER_COUNT + 1];
+	static {
+		GROUPINGS[0] = 1;
+		GROUPINGS[1] = 1;
+		for(int n = 2; n < GROUPINGS.length; ++n)
+			GROUPINGS[n] = GROUPINGS[n - 1] + GROUPINGS[n - 2];
+	}
+
+	/**
+	 * Statistics of the puzzles drawn with one set of parameters
+	 */
+	static final class Stats {
+		// Solution counts from 1 to 63, larger counts in the last bucket
+		final long[] solutionCounts = new long[64];
+		int numberCount;
+		double proba;
+		long samples;
+		double totalSolutions;
+		double totalBits;
+
+		void add(Puzzle puzzle) {
+			long solutions = puzzle.getSolutionCount();
+			++samples;
+			++solutionCounts[(int) Math.min(solutions, solutionCounts.length - 1)];
+			totalSolutions += solutions;
+			totalBits += Math.log(GROUPINGS[puzzle.getDigitCount()] / solutions) / Math.log(2);
+		}
+
+		void merge(Stats other) {
+			for(int i = 0; i < solutionCounts.length; ++i)
+				solutionCounts[i] += other.solutionCounts[i];
+			samples += other.samples;
+			totalSolutions += other.totalSolutions;
+			totalBits += other.totalBits;
+		}
+
+		double meanBits() {
+			return totalBits / samples;
+		}
+
+		double uniqueRatio() {
+			return (double) solutionCounts[1] / samples;
+		}
+
+		/**
+		 * @return the smallest solution count of a share of the puzzles
+		 */
+		int solutionPercentile(double percent) {
+			long rank = (long) Math.ceil(samples * percent / 100);
+			long seen = 0;
+			for(int i = 1; i < solutionCounts.length; ++i) {
+				seen += solutionCounts[i];
+				if(seen >= rank)
+					return i;
+			}
+			return solutionCounts.length - 1;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "difficulty %.2f bits, unique %.1f%%, ambiguous %.1f%%, solutions mean %.2f p50 %d p90 %d p99 %d",
+					meanBits(), 100 * uniqueRatio(), 100 * (1 - uniqueRatio()), totalSolutions / samples,
+					solutionPercentile(50), solutionPercentile(90), solutionPercentile(99));
+		}
+	}
+
+	private final int samples;
+
+	/**
+	 * Constructor
+	 * @param samples The number of puzzles drawn for each set of parameters.
+	 */
+	public LevelCalibrator(int samples) {
+		if(samples < 1)
+			throw new IllegalArgumentException("Should draw at least one puzzle: " + samples);
+		this.samples = samples;
+	}
+
+	/**
+	 * Draws and solves puzzles with a set of parameters, on every core
+	 * @param numberCount The count of numbers.
+	 * @param proba The probability of drawing a two-digit number.
+	 * @return The statistics of the puzzles.
+	 */
+	public Stats measure(final int numberCount, final double proba) {
+		Stats stats = IntStream.range(0, samples).parallel().collect(Stats::new,
+				(s, i) -> s.add(PuzzleGenerator.solve(PuzzleGenerator.generate(ThreadLocalRandom.current(), 1, numberCount, proba))),
+				Stats::merge);
+		stats.numberCount = numberCount;
+		stats.proba = proba;
+		return stats;
+	}
+
+	/**
+	 * Builds the level table rising evenly between two difficulties
+	 * @param firstBits The difficulty of the first level, in bits.
+	 * @param lastBits The difficulty of the last level, in bits.
+	 * @param notes Receives the statistics of each chosen level, indexed by level.
+	 * @return The table.
+	 */
+	public LevelTable calibrate(double firstBits, double lastBits, String[] notes) {
+		List<Stats> candidates = new ArrayList<Stats>();
+		for(int count = 3; count <= MAX_NUMBER_COUNT; ++count)
+			for(int step = 0; step * PROBA_STEP <= 1 + 1e-9; ++step)
+				candidates.add(measure(count, Math.min(step * PROBA_STEP, 1)));
+		int[] counts = new int[GameEngine.MAX_LEVEL + 1];
+		double[] probas = new double[GameEngine.MAX_LEVEL + 1];
+		double previousBits = Double.NEGATIVE_INFINITY;
+		for(int level = 1; level <= GameEngine.MAX_LEVEL; ++level) {
+			double target = firstBits + (lastBits - firstBits) * (level - 1) / (GameEngine.MAX_LEVEL - 1);
+			// The closest candidate that is not easier than the previous level
+			Stats best = null;
+			for(Stats candidate : candidates) {
+				if(candidate.meanBits() < previousBits)
+					continue;
+				if(best == null || Math.abs(candidate.meanBits() - target) < Math.abs(best.meanBits() - target))
+					best = candidate;
+			}
+			if(best == null)
+				best = candidates.get(candidates.size() - 1);
+			counts[level] = best.numberCount;
+			probas[level] = best.proba;
+			previousBits = best.meanBits();
+			notes[level] = String.format(Locale.ROOT, "target %.2f bits, ", target) + best;
+		}
+		return new LevelTable(counts, probas);
+	}
+
+	/**
+	 * Calibrates the levels and writes the table.
+	 * @param args The number of puzzles per set of parameters (100000 by
+	 * default), the output file (levels.txt), and optionally the difficulty
+	 * of the first and last levels in bits (by default, those of the original
+	 * formulas).
+	 * @throws IOException if the table can not be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		int samples = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+		Path output = Paths.get((args.length > 1) ? args[1] : "levels.txt");
+		LevelCalibrator calibrator = new LevelCalibrator(samples);
+		long start = System.nanoTime();
+		double firstBits, lastBits;
+		if(args.length > 3) {
+			firstBits = Double.parseDouble(args[2]);
+			lastBits = Double.parseDouble(args[3]);
+		}
+		else {
+			LevelTable formulas = LevelTable.DEFAULT;
+			Stats first = calibrator.measure(formulas.getNumberCount(1), formulas.getDoubleDigitProba(1));
+			Stats last = calibrator.measure(formulas.getNumberCount(GameEngine.MAX_LEVEL), formulas.getDoubleDigitProba(GameEngine.MAX_LEVEL));
+			System.out.println("Original level 1: " + first);
+			System.out.println("Original level " + GameEngine.MAX_LEVEL + ": " + last);
+			firstBits = first.meanBits();
+			lastBits = last.meanBits();
+		}
+		String[] notes = new String[GameEngine.MAX_LEVEL + 1];
+		LevelTable table = calibrator.calibrate(firstBits, lastBits, notes);
+		for(int level = 1; level <= GameEngine.MAX_LEVEL; ++level)
+			System.out.printf(Locale.ROOT, "Level %2d: %d numbers, proba %.2f, %s%n", level,
+					table.getNumberCount(level), table.getDoubleDigitProba(level), notes[level]);
+		try(Writer out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+			out.write("# MeanSum level table, " + samples + " puzzles per set of parameters\n");
+			table.write(out, notes);
+		}
+		System.out.printf(Locale.ROOT, "Wrote %s in %.1f s%n", output, (System.nanoTime() - start) / 1e9);
+	}
+}
@@ -0,0 +1,136 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * The level table holds the parameters of the puzzles of each arcade level:
+ * the count of numbers and the probability of drawing a two-digit number.
+ * The default table follows the original formulas of the game; a calibrated
+ * table (see {@link LevelCalibrator}) can be loaded from a text file with one
+ * line per level, {@code level numberCount doubleDigitProba}, anything after
+ * a '#' being a comment. Levels missing from the file keep the default
+ * parameters.
+ *
+ */
+public final class LevelTable {
+	/**
+	 * The parameters of the original formulas
+	 */
+	public static final LevelTable DEFAULT = formulas();
+
+	// Parameters indexed by level, index 0 being unused
+	private final int[] numberCounts;
+	private final double[] doubleDigitProbas;
+
+	/**
+	 * Constructor
+	 * @param numberCounts The count of numbers of each level, indexed by level.
+	 * @param doubleDigitProbas The probability of a two-digit number of each level, indexed by level.
+	 */
+	public LevelTable(int[] numberCounts, double[] doubleDigitProbas) {
+		if(numberCounts.length != GameEngine.MAX_LEVEL + 1 || doubleDigitProbas.length != GameEngine.MAX_LEVEL + 1)
+			throw new IllegalArgumentException("Should provide the parameters of levels 1 to " + GameEngine.MAX_LEVEL);
+		for(int level = 1; level <= GameEngine.MAX_LEVEL; ++level) {
+			if(numberCounts[level] < 1)
+				throw new IllegalArgumentException("Level " + level + " needs at least one number: " + numberCounts[level]);
+			if(doubleDigitProbas[level] < 0 || doubleDigitProbas[level] > 1)
+				throw new IllegalArgumentException("Level " + level + " has an invalid probability: " + doubleDigitProbas[level]);
+		}
+		this.numberCounts = numberCounts.clone();
+		this.doubleDigitProbas = doubleDigitProbas.clone();
+	}
+
+	/**
+	 * Builds the table of the original formulas
+	 */
+	private static LevelTable formulas() {
+		int[] counts = new int[GameEngine.MAX_LEVEL + 1];
+		double[] probas = new double[GameEngine.MAX_LEVEL + 1];
+		for(int level = 0; level <= GameEngine.MAX_LEVEL; ++level) {
+			counts[level] = PuzzleGenerator.numberCount(level);
+			probas[level] = PuzzleGenerator.doubleDigitProba(level);
+		}
+		return new LevelTable(counts, probas);
+	}
+
+	/**
+	 * Loads a table
+	 * @param file The text file of the table.
+	 * @return The table.
+	 * @throws IOException if the file can not be read.
+	 */
+	public static LevelTable load(Path file) throws IOException {
+		int[] counts = DEFAULT.numberCounts.clone();
+		double[] probas = DEFAULT.doubleDigitProbas.clone();
+		try(BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			int lineNumber = 0;
+			String line;
+			while((line = reader.readLine()) != null) {
+				++lineNumber;
+				int comment = line.indexOf('#');
+				if(comment >= 0)
+					line = line.substring(0, comment);
+				line = line.trim();
+				if(line.isEmpty())
+					continue;
+				String[] fields = line.split("\\s+");
+				try {
+					if(fields.length != 3)
+						throw new IllegalArgumentException("expected: level numberCount doubleDigitProba");
+					int level = Integer.parseInt(fields[0]);
+					if(level < 1 || level > GameEngine.MAX_LEVEL)
+						throw new IllegalArgumentException("no level " + level);
+					counts[level] = Integer.parseInt(fields[1]);
+					probas[level] = Double.parseDouble(fields[2]);
+				} catch (IllegalArgumentException e) {
+					throw new IOException(file + ":" + lineNumber + ": " + e.getMessage(), e);
+				}
+			}
+		}
+		try {
+			return new LevelTable(counts, probas);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(file + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Writes the table in the format read by {@link #load(Path)}
+	 * @param out The destination.
+	 * @param notes A comment for each level, indexed by level, or null.
+	 * @throws IOException if the table can not be written.
+	 */
+	public void write(Writer out, String[] notes) throws IOException {
+		out.write("# level numberCount doubleDigitProba\n");
+		for(int level = 1; level <= GameEngine.MAX_LEVEL; ++level) {
+			out.write(String.format(Locale.ROOT, "%d %d %.3f", level, numberCounts[level], doubleDigitProbas[level]));
+			if(notes != null && notes[level] != null)
+				out.write("  # " + notes[level]);
+			out.write('\n');
+		}
+	}
+
+	/**
+	 * @param level The arcade level.
+	 * @return the count of numbers of the puzzles of the level
+	 */
+	public int getNumberCount(int level) {
+		return numberCounts[clamp(level)];
+	}
+
+	/**
+	 * @param level The arcade level.
+	 * @return the probability of drawing a two-digit number at the level
+	 */
+	public double getDoubleDigitProba(int level) {
+		return doubleDigitProbas[clamp(level)];
+	}
+
+	private static int clamp(int level) {
+		return Math.min(Math.max(level, 1), GameEngine.MAX_LEVEL);
+	}
+}
@@ -0,0 +1,148 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The parallel solver counts the solutions of very long puzzles (tens of
+ * thousands of digits and more) on a {@link ForkJoinPool}.
+ * It computes the same table as the {@link Solver}, one position at a time,
+ * but the sums of each row are split in slices computed by different
+ * threads: a row only depends on the two previous rows, so the slices of a
+ * row are independent. A pair of digits is always read from the digits
+ * themselves, so no group is lost between two slices.
+ * It only counts solutions; use the {@link Solver} to find one.
+ *
+ */
+public class ParallelSolver {
+	/**
+	 * Number of sums below which a slice of a row is not split any further
+	 */
+	private static final int SLICE = 1 << 14;
+
+	private final ForkJoinPool pool;
+	private long[][] rows = new long[3][0];
+
+	/**
+	 * Constructor using the common pool
+	 */
+	public ParallelSolver() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructor
+	 * @param pool The pool that computes the slices of the rows.
+	 */
+	public ParallelSolver(ForkJoinPool pool) {
+		if(pool == null)
+			throw new IllegalArgumentException("Should provide a valid ForkJoinPool!");
+		this.pool = pool;
+	}
+
+	/**
+	 * Counts the solutions of a puzzle.
+	 * @param digits The digits of the puzzle.
+	 * @param length The number of digits to use from the array.
+	 * @param goal The sum to reach.
+	 * @return The number of solutions, saturated at {@link Long#MAX_VALUE}.
+	 */
+	public long solve(byte[] digits, int length, int goal) {
+		if(goal < 0)
+			return 0;
+		if(rows[0].length < goal + 1)
+			rows = new long[3][goal + 1];
+		long[] before = rows[0], previous = rows[1], current = rows[2];
+		int beforeLow = 1, beforeHigh = 0;
+		int previousLow = 0, previousHigh = 0;
+		// There is exactly one way to group zero digits: the empty sum
+		previous[0] = 1;
+
+		for(int p = 1; p <= length; ++p) {
+			int single = digits[p - 1];
+			int pair = (p >= 2) ? digits[p - 2] * 10 + single : Integer.MAX_VALUE;
+			// Range of the sums reachable at position p
+			int low = Integer.MAX_VALUE, high = -1;
+			if(previousLow <= previousHigh && previousLow + single <= goal) {
+				low = previousLow + single;
+				high = Math.min(previousHigh + single, goal);
+			}
+			if(p >= 2 && beforeLow <= beforeHigh && beforeLow + pair <= goal) {
+				low = Math.min(low, beforeLow + pair);
+				high = Math.max(high, Math.min(beforeHigh + pair, goal));
+			}
+			if(high < 0)
+				return 0;
+			RowTask task = new RowTask(before, beforeLow, beforeHigh, pair,
+					previous, previousLow, previousHigh, single, current, low, high + 1);
+			if(high - low < SLICE)
+				task.compute();
+			else
+				pool.invoke(task);
+			// Rotate the rows, the oldest one is reused for the next position
+			long[] recycled = before;
+			before = previous;
+			beforeLow = previousLow;
+			beforeHigh = previousHigh;
+			previous = current;
+			previousLow = low;
+			previousHigh = high;
+			current = recycled;
+		}
+		rows[0] = before;
+		rows[1] = previous;
+		rows[2] = current;
+		return (goal >= previousLow && goal <= previousHigh) ? previous[goal] : 0;
+	}
+
+	/**
+	 * Computes a slice of the sums of a row from the two previous rows.
+	 * Every sum of the slice is written, so the row does not need to be cleared.
+	 */
+	private static class RowTask extends RecursiveAction {
+		private static final long serialVersionUID = 2851794520981372463L;
+		private final long[] before, previous, current;
+		private final int beforeLow, beforeHigh, pair;
+		private final int previousLow, previousHigh, single;
+		private final int from, to;
+
+		RowTask(long[] before, int beforeLow, int beforeHigh, int pair,
+				long[] previous, int previousLow, int previousHigh, int single,
+				long[] current, int from, int to) {
+			this.before = before;
+			this.beforeLow = beforeLow;
+			this.beforeHigh = beforeHigh;
+			this.pair = pair;
+			this.previous = previous;
+			this.previousLow = previousLow;
+			this.previousHigh = previousHigh;
+			this.single = single;
+			this.current = current;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from > SLICE) {
+				int middle = (from + to) >>> 1;
+				invokeAll(slice(from, middle), slice(middle, to));
+				return;
+			}
+			for(int s = from; s < to; ++s) {
+				int a = s - single;
+				long ways = (a >= previousLow && a <= previousHigh) ? previous[a] : 0;
+				int b = s - pair;
+				if(b >= beforeLow && b <= beforeHigh) {
+					ways += before[b];
+					if(ways < 0)
+						ways = Long.MAX_VALUE;
+				}
+				current[s] = ways;
+			}
+		}
+
+		private RowTask slice(int from, int to) {
+			return new RowTask(before, beforeLow, beforeHigh, pair,
+					previous, previousLow, previousHigh, single, current, from, to);
+		}
+	}
+}
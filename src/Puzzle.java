@@ -0,0 +1,152 @@
+import java.util.Arrays;
+
+/**
+ * This class represents a generated puzzle: the numbers it was built from,
+ * the digits shown on the tiles, the goal and the number of ways to reach
+ * the goal. A puzzle can not be modified once created.
+ *
+ */
+public final class Puzzle {
+	/**
+	 * Value of the solution count when the puzzle was not solved
+	 */
+	public static final long UNSOLVED = -1;
+
+	private final int[] numbers;
+	private final byte[] digits;
+	private final int goal;
+	private final boolean arcade;
+	private final int level;
+	private final double doubleDigitProba;
+	private final long solutionCount;
+
+	/**
+	 * Constructor
+	 * @param numbers The numbers the puzzle is built from (between 1 and 99).
+	 * @param arcade Whether the puzzle was generated for arcade mode.
+	 * @param level The arcade level of the puzzle.
+	 * @param doubleDigitProba The probability that was used to draw two-digit numbers.
+	 * @param solutionCount The number of solutions, or {@link #UNSOLVED}.
+	 */
+	public Puzzle(int[] numbers, boolean arcade, int level, double doubleDigitProba, long solutionCount) {
+		this.numbers = numbers.clone();
+		int tiles = 0;
+		int total = 0;
+		for(int number : numbers) {
+			if(number < 1 || number > 99)
+				throw new IllegalArgumentException("Numbers must be between 1 and 99: " + number);
+			tiles += (number >= 10) ? 2 : 1;
+			total += number;
+		}
+		// Split the numbers into the digits of the tiles
+		this.digits = new byte[tiles];
+		int position = 0;
+		for(int number : numbers) {
+			if(number >= 10)
+				digits[position++] = (byte) (number / 10);
+			digits[position++] = (byte) (number % 10);
+		}
+		this.goal = total;
+		this.arcade = arcade;
+		this.level = level;
+		this.doubleDigitProba = doubleDigitProba;
+		this.solutionCount = solutionCount;
+	}
+
+	/**
+	 * Creates a copy of this puzzle with its number of solutions
+	 * @param solutionCount The number of solutions.
+	 * @return The solved puzzle.
+	 */
+	public Puzzle withSolutionCount(long solutionCount) {
+		return new Puzzle(numbers, arcade, level, doubleDigitProba, solutionCount);
+	}
+
+	/**
+	 * @return the numbers the puzzle is built from
+	 */
+	public int[] getNumbers() {
+		return numbers.clone();
+	}
+
+	/**
+	 * @return the count of numbers the puzzle is built from
+	 */
+	public int getNumberCount() {
+		return numbers.length;
+	}
+
+	/**
+	 * @return the number of digits (tiles) of the puzzle
+	 */
+	public int getDigitCount() {
+		return digits.length;
+	}
+
+	/**
+	 * @param position The position of the digit.
+	 * @return the digit at this position
+	 */
+	public int getDigit(int position) {
+		return digits[position];
+	}
+
+	/**
+	 * Copies the digits of the puzzle
+	 * @param destination The array receiving the digits, at least {@link #getDigitCount()} long.
+	 */
+	public void copyDigits(byte[] destination) {
+		System.arraycopy(digits, 0, destination, 0, digits.length);
+	}
+
+	/**
+	 * @return the goal of the puzzle
+	 */
+	public int getGoal() {
+		return goal;
+	}
+
+	/**
+	 * @return whether the puzzle was generated for arcade mode
+	 */
+	public boolean isArcade() {
+		return arcade;
+	}
+
+	/**
+	 * @return the arcade level of the puzzle
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * @return the probability that was used to draw two-digit numbers
+	 */
+	public double getDoubleDigitProba() {
+		return doubleDigitProba;
+	}
+
+	/**
+	 * @return the ratio of numbers with two digits in the puzzle
+	 */
+	public double getDoubleDigitRatio() {
+		return (double) (digits.length - numbers.length) / numbers.length;
+	}
+
+	/**
+	 * @return the number of solutions, or {@link #UNSOLVED}
+	 */
+	public long getSolutionCount() {
+		return solutionCount;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(digits.length);
+		for(byte digit : digits)
+			sb.append((char) ('0' + digit));
+		return "Puzzle[goal=" + goal + ", numbers=" + Arrays.toString(numbers) + ", suite=" + sb
+				+ ", level=" + level + ", solutions=" + solutionCount + "]";
+	}
+}
@@ -0,0 +1,355 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * A puzzle bank is a file of pre-generated, pre-solved puzzles that is mapped
+ * in memory and read in place, so games can draw from tens of millions of
+ * puzzles without loading them.
+ * <p>
+ * The file starts with a header (magic number, version, maximum digit count,
+ * record stride, puzzle count) followed by a level table giving the first id,
+ * the count of the puzzles and the probability of a two-digit number of each
+ * level (level 0 holds the training puzzles), from the {@link LevelTable} the
+ * puzzles were generated with. Puzzles are stored by level in records of a fixed stride, so the
+ * record of a puzzle is found from its id without any index:
+ * <pre>
+ * short digitCount, byte level, byte reserved, int goal, long solutionCount,
+ * digits (4 bits each, high nibble first), pair mask (1 bit per digit)
+ * </pre>
+ * The pair mask flags the digits starting a two-digit number, so the numbers
+ * the puzzle was built from can be rebuilt.
+ *
+ */
+public class PuzzleBank implements PuzzleSource {
+	private static final int MAGIC = 0x4D53424B;
+	private static final short VERSION = 1;
+	private static final int LEVELS = GameEngine.MAX_LEVEL + 1;
+	private static final int LEVEL_SIZE = 16;
+	private static final int HEADER_SIZE = 16 + LEVELS * LEVEL_SIZE;
+	private static final int RECORD_HEADER_SIZE = 16;
+	/**
+	 * Maximum size of a mapped segment of the file
+	 */
+	private static final int SEGMENT_SIZE = 1 << 30;
+
+	private final MappedByteBuffer[] segments;
+	private final int recordsPerSegment;
+	private final int maxDigits;
+	private final int stride;
+	private final int puzzleCount;
+	private final int[] levelFirst = new int[LEVELS];
+	private final int[] levelCount = new int[LEVELS];
+	private final double[] levelProba = new double[LEVELS];
+	/**
+	 * Parameters of the arcade levels, for the puzzles the bank does not hold
+	 */
+	private final LevelTable levels;
+
+	/**
+	 * Opens a puzzle bank, with the default level parameters
+	 * @param file The file of the bank.
+	 * @return The bank, mapped in memory.
+	 * @throws IOException if the file can not be read or is not a puzzle bank.
+	 */
+	public static PuzzleBank open(Path file) throws IOException {
+		return open(file, LevelTable.DEFAULT);
+	}
+
+	/**
+	 * Opens a puzzle bank
+	 * @param file The file of the bank.
+	 * @param levels The parameters of the arcade levels, used to generate the
+	 * puzzles of the levels the bank does not hold.
+	 * @return The bank, mapped in memory.
+	 * @throws IOException if the file can not be read or is not a puzzle bank.
+	 */
+	public static PuzzleBank open(Path file, LevelTable levels) throws IOException {
+		if(levels == null)
+			throw new IllegalArgumentException("Should provide a valid LevelTable!");
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return new PuzzleBank(channel, levels);
+		}
+	}
+
+	/**
+	 * Maps the file of the bank. The mapping stays valid once the channel is closed.
+	 */
+	private PuzzleBank(FileChannel channel, LevelTable levels) throws IOException {
+		this.levels = levels;
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), HEADER_SIZE));
+		if(header.capacity() < HEADER_SIZE || header.getInt(0) != MAGIC)
+			throw new IOException("Not a puzzle bank");
+		if(header.getShort(4) != VERSION)
+			throw new IOException("Unsupported puzzle bank version " + header.getShort(4));
+		this.maxDigits = header.getShort(6);
+		this.stride = header.getInt(8);
+		this.puzzleCount = header.getInt(12);
+		for(int level = 0; level < LEVELS; ++level) {
+			levelFirst[level] = header.getInt(16 + level * LEVEL_SIZE);
+			levelCount[level] = header.getInt(20 + level * LEVEL_SIZE);
+			levelProba[level] = header.getDouble(24 + level * LEVEL_SIZE);
+		}
+		if(channel.size() < HEADER_SIZE + (long) puzzleCount * stride)
+			throw new IOException("Truncated puzzle bank");
+		// Map the records in segments holding a whole number of records
+		this.recordsPerSegment = SEGMENT_SIZE / stride;
+		int segmentCount = (puzzleCount + recordsPerSegment - 1) / recordsPerSegment;
+		this.segments = new MappedByteBuffer[segmentCount];
+		for(int i = 0; i < segmentCount; ++i) {
+			long first = (long) i * recordsPerSegment;
+			long records = Math.min(recordsPerSegment, puzzleCount - first);
+			segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * stride, records * stride);
+		}
+	}
+
+	/**
+	 * @return the number of puzzles in the bank
+	 */
+	public int size() {
+		return puzzleCount;
+	}
+
+	/**
+	 * @param level The arcade level, or 0 for training puzzles.
+	 * @return the number of puzzles of a level
+	 */
+	public int size(int level) {
+		return levelCount[level];
+	}
+
+	/**
+	 * Gets the id of a puzzle of a level
+	 * @param level The arcade level, or 0 for training puzzles.
+	 * @param index The index of the puzzle among the puzzles of the level.
+	 * @return The id of the puzzle.
+	 */
+	public int idOf(int level, int index) {
+		if(index < 0 || index >= levelCount[level])
+			throw new IndexOutOfBoundsException("No puzzle " + index + " at level " + level);
+		return levelFirst[level] + index;
+	}
+
+	/**
+	 * Reads a puzzle
+	 * @param id The id of the puzzle.
+	 * @return The puzzle.
+	 */
+	public Puzzle get(int id) {
+		if(id < 0 || id >= puzzleCount)
+			throw new IndexOutOfBoundsException("No puzzle " + id);
+		ByteBuffer segment = segments[id / recordsPerSegment];
+		int offset = (id % recordsPerSegment) * stride;
+		int digitCount = segment.getShort(offset);
+		int level = segment.get(offset + 2);
+		long solutionCount = segment.getLong(offset + 8);
+		int digitsOffset = offset + RECORD_HEADER_SIZE;
+		int maskOffset = digitsOffset + (maxDigits + 1) / 2;
+		// Each two-digit number sets one bit of the pair mask, the unused bits are zero
+		int pairs = 0;
+		for(int i = 0; i < (digitCount + 7) / 8; ++i)
+			pairs += Integer.bitCount(segment.get(maskOffset + i) & 0xFF);
+		// Rebuild the numbers from the digits and the pair mask
+		int[] numbers = new int[digitCount - pairs];
+		for(int i = 0, count = 0; i < digitCount; ++i) {
+			int digit = digitAt(segment, digitsOffset, i);
+			if((segment.get(maskOffset + (i >>> 3)) & (1 << (i & 7))) != 0)
+				digit = digit * 10 + digitAt(segment, digitsOffset, ++i);
+			numbers[count++] = digit;
+		}
+		return new Puzzle(numbers, level > 0, level, levelProba[level], solutionCount);
+	}
+
+	/**
+	 * Reads a 4-bit digit of a record
+	 */
+	private static int digitAt(ByteBuffer segment, int digitsOffset, int position) {
+		int packed = segment.get(digitsOffset + (position >>> 1));
+		return ((position & 1) == 0) ? (packed >>> 4) & 0xF : packed & 0xF;
+	}
+
+	/**
+	 * Draws a random puzzle of the mode and level. A new puzzle is generated
+	 * if the bank has no puzzle for this level.
+	 */
+	@Override
+	public Puzzle nextPuzzle(Random random, boolean arcade, int level) {
+		int slot = arcade ? level : 0;
+		if(slot >= LEVELS || levelCount[slot] == 0)
+			return PuzzleGenerator.generate(random, arcade, level, levels);
+		return get(levelFirst[slot] + random.nextInt(levelCount[slot]));
+	}
+
+	/**
+	 * Creates a puzzle bank. Puzzles must be added by increasing level,
+	 * training puzzles first.
+	 * @param file The file of the bank.
+	 * @param maxDigits The maximum number of digits of the puzzles.
+	 * @return The writer of the bank, to close once every puzzle is added.
+	 * @throws IOException if the file can not be created.
+	 */
+	public static Writer create(Path file, int maxDigits) throws IOException {
+		return new Writer(file, maxDigits);
+	}
+
+	/**
+	 * Writes the puzzles of a bank, then its header when closed
+	 */
+	public static class Writer implements Closeable {
+		private final FileChannel channel;
+		private final int maxDigits;
+		private final int stride;
+		private final ByteBuffer buffer;
+		private final int[] levelFirst = new int[LEVELS];
+		private final int[] levelCount = new int[LEVELS];
+		private final double[] levelProba = new double[LEVELS];
+		private int puzzleCount;
+		private int currentLevel;
+
+		private Writer(Path file, int maxDigits) throws IOException {
+			if(maxDigits < 1 || maxDigits > Short.MAX_VALUE)
+				throw new IllegalArgumentException("Invalid maximum digit count: " + maxDigits);
+			this.maxDigits = maxDigits;
+			this.stride = RECORD_HEADER_SIZE + (maxDigits + 1) / 2 + (maxDigits + 7) / 8;
+			this.buffer = ByteBuffer.allocate(Math.max(stride, 1 << 16));
+			this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			channel.position(HEADER_SIZE);
+		}
+
+		/**
+		 * Adds a puzzle to the bank. The puzzles of a level must be generated
+		 * with the same parameters: the bank records those of its first puzzle.
+		 * @param puzzle The puzzle, with a level not lower than the previous puzzle.
+		 * @throws IOException if the puzzle can not be written.
+		 */
+		public synchronized void add(Puzzle puzzle) throws IOException {
+			int level = puzzle.isArcade() ? puzzle.getLevel() : 0;
+			if(level < currentLevel || level >= LEVELS)
+				throw new IllegalArgumentException("Puzzles must be added by increasing level: " + level);
+			if(puzzle.getDigitCount() > maxDigits)
+				throw new IllegalArgumentException("Puzzle has more than " + maxDigits + " digits");
+			if(level != currentLevel || levelCount[level] == 0) {
+				currentLevel = level;
+				levelFirst[level] = puzzleCount;
+				levelProba[level] = puzzle.getDoubleDigitProba();
+			}
+			if(buffer.remaining() < stride)
+				flush();
+			int offset = buffer.position();
+			buffer.putShort((short) puzzle.getDigitCount());
+			buffer.put((byte) level);
+			buffer.put((byte) 0);
+			buffer.putInt(puzzle.getGoal());
+			buffer.putLong(puzzle.getSolutionCount());
+			// Digits and pair mask are zeroed before being filled
+			for(int i = RECORD_HEADER_SIZE; i < stride; ++i)
+				buffer.put((byte) 0);
+			int digitsOffset = offset + RECORD_HEADER_SIZE;
+			int maskOffset = digitsOffset + (maxDigits + 1) / 2;
+			for(int i = 0; i < puzzle.getDigitCount(); ++i) {
+				int index = digitsOffset + (i >>> 1);
+				int shift = ((i & 1) == 0) ? 4 : 0;
+				buffer.put(index, (byte) (buffer.get(index) | (puzzle.getDigit(i) << shift)));
+			}
+			int position = 0;
+			for(int number : puzzle.getNumbers()) {
+				if(number >= 10) {
+					int index = maskOffset + (position >>> 3);
+					buffer.put(index, (byte) (buffer.get(index) | (1 << (position & 7))));
+					position += 2;
+				}
+				else
+					position += 1;
+			}
+			++levelCount[level];
+			++puzzleCount;
+		}
+
+		/**
+		 * Writes the buffered records
+		 */
+		private void flush() throws IOException {
+			buffer.flip();
+			while(buffer.hasRemaining())
+				channel.write(buffer);
+			buffer.clear();
+		}
+
+		/**
+		 * Writes the remaining records and the header, then closes the file
+		 */
+		@Override
+		public synchronized void close() throws IOException {
+			try {
+				flush();
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				header.putInt(MAGIC);
+				header.putShort(VERSION);
+				header.putShort((short) maxDigits);
+				header.putInt(stride);
+				header.putInt(puzzleCount);
+				for(int level = 0; level < LEVELS; ++level) {
+					header.putInt(levelFirst[level]);
+					header.putInt(levelCount[level]);
+					header.putDouble(levelProba[level]);
+				}
+				header.flip();
+				channel.position(0);
+				while(header.hasRemaining())
+					channel.write(header);
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Generates a puzzle bank with the same number of solved puzzles for
+	 * training and for each arcade level.
+	 * @param args The file of the bank, the number of puzzles per level, and
+	 * optionally "unique" and the file of a level table (the original
+	 * formulas by default).
+	 * @throws IOException if the bank can not be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length < 2) {
+			System.err.println("Usage: PuzzleBank <file> <puzzles per level> [unique] [level table]");
+			return;
+		}
+		Path file = Paths.get(args[0]);
+		long perLevel = Long.parseLong(args[1]);
+		boolean uniqueOnly = false;
+		LevelTable levels = LevelTable.DEFAULT;
+		for(int i = 2; i < args.length; ++i) {
+			if(args[i].equals("unique"))
+				uniqueOnly = true;
+			else
+				levels = LevelTable.load(Paths.get(args[i]));
+		}
+		// Training puzzles have up to 6 numbers
+		int maxNumbers = 6;
+		for(int level = 1; level < LEVELS; ++level)
+			maxNumbers = Math.max(maxNumbers, levels.getNumberCount(level));
+		final LevelTable table = levels;
+		try (Writer writer = create(file, 2 * maxNumbers)) {
+			for(int level = 0; level < LEVELS; ++level) {
+				PuzzleGenerator.stream(level > 0, level, uniqueOnly, table).limit(perLevel).forEach(puzzle -> {
+					try {
+						writer.add(puzzle);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+				System.out.println("Level " + level + ": " + perLevel + " puzzles");
+			}
+		}
+	}
+}
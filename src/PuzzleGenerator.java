@@ -0,0 +1,202 @@
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+/**
+ * The puzzle generator draws the numbers of new puzzles, either one at a time
+ * for a game or in bulk on every core for batch jobs. Puzzles generated in
+ * bulk are solved, so callers can select them on their number of solutions.
+ * The parameters of the arcade levels come from a {@link LevelTable}, by
+ * default the original formulas of the game.
+ *
+ */
+public class PuzzleGenerator implements PuzzleSource {
+	/**
+	 * Probability of drawing a two-digit number in training mode
+	 */
+	public static final double TRAINING_DOUBLE_DIGIT_PROBA = 0.3;
+
+	/**
+	 * One solver per thread for the bulk generation
+	 */
+	private static final ThreadLocal<Solver> SOLVERS = new ThreadLocal<Solver>() {
+		@Override
+		protected Solver initialValue() {
+			return new Solver();
+		}
+	};
+
+	/**
+	 * Parameters of the arcade levels of the puzzles of {@link #nextPuzzle(Random, boolean, int)}
+	 */
+	private final LevelTable levels;
+
+	/**
+	 * Constructor generating puzzles with the default level parameters
+	 */
+	public PuzzleGenerator() {
+		this(LevelTable.DEFAULT);
+	}
+
+	/**
+	 * Constructor
+	 * @param levels The parameters of the arcade levels.
+	 */
+	public PuzzleGenerator(LevelTable levels) {
+		if(levels == null)
+			throw new IllegalArgumentException("Should provide a valid LevelTable!");
+		this.levels = levels;
+	}
+
+	/**
+	 * Gets the probability of drawing a two-digit number at an arcade level,
+	 * with the original formula
+	 * @param level The arcade level.
+	 * @return The probability.
+	 */
+	public static double doubleDigitProba(int level) {
+		return 0.3 + (0.3 * level / GameEngine.MAX_LEVEL);
+	}
+
+	/**
+	 * Gets the count of numbers of a puzzle at an arcade level, with the
+	 * original formula
+	 * @param level The arcade level.
+	 * @return The count of numbers.
+	 */
+	public static int numberCount(int level) {
+		return (int) (3 + Math.round(3.0 * level / GameEngine.MAX_LEVEL));
+	}
+
+	/**
+	 * Generates a puzzle without solving it, with the default level parameters.
+	 * @param random The source of randomness.
+	 * @param arcade Whether the puzzle is for arcade mode (or training mode).
+	 * @param level The arcade level.
+	 * @return The puzzle.
+	 */
+	public static Puzzle generate(Random random, boolean arcade, int level) {
+		return generate(random, arcade, level, LevelTable.DEFAULT);
+	}
+
+	/**
+	 * Generates a puzzle without solving it.
+	 * @param random The source of randomness.
+	 * @param arcade Whether the puzzle is for arcade mode (or training mode).
+	 * @param level The arcade level.
+	 * @param levels The parameters of the arcade levels.
+	 * @return The puzzle.
+	 */
+	public static Puzzle generate(Random random, boolean arcade, int level, LevelTable levels) {
+		if(arcade)
+			return generate(random, level, levels.getNumberCount(level), levels.getDoubleDigitProba(level));
+		// Training puzzles have between 3 and 6 numbers
+		int[] numbers = drawNumbers(random, 3 + random.nextInt(4), TRAINING_DOUBLE_DIGIT_PROBA);
+		return new Puzzle(numbers, false, level, TRAINING_DOUBLE_DIGIT_PROBA, Puzzle.UNSOLVED);
+	}
+
+	/**
+	 * Generates an arcade puzzle with given parameters, without solving it.
+	 * @param random The source of randomness.
+	 * @param level The arcade level recorded in the puzzle.
+	 * @param count The count of numbers.
+	 * @param proba The probability of drawing a two-digit number.
+	 * @return The puzzle.
+	 */
+	public static Puzzle generate(Random random, int level, int count, double proba) {
+		return new Puzzle(drawNumbers(random, count, proba), true, level, proba, Puzzle.UNSOLVED);
+	}
+
+	/**
+	 * Draws the numbers of a puzzle
+	 */
+	private static int[] drawNumbers(Random random, int count, double proba) {
+		int[] numbers = new int[count];
+		// Either a number between 1 and 9 or 10 and 99
+		for(int i = 0; i < count; ++i)
+			numbers[i] = (random.nextDouble() <= proba) ? 10 + random.nextInt(90) : 1 + random.nextInt(9);
+		return numbers;
+	}
+
+	@Override
+	public Puzzle nextPuzzle(Random random, boolean arcade, int level) {
+		return generate(random, arcade, level, levels);
+	}
+
+	/**
+	 * @return the parameters of the arcade levels of this generator
+	 */
+	public LevelTable getLevels() {
+		return levels;
+	}
+
+	/**
+	 * Generates and solves a puzzle on the calling thread, with the default
+	 * level parameters.
+	 * @param arcade Whether the puzzle is for arcade mode (or training mode).
+	 * @param level The arcade level.
+	 * @return The solved puzzle.
+	 */
+	public static Puzzle generateSolved(boolean arcade, int level) {
+		return generateSolved(arcade, level, LevelTable.DEFAULT);
+	}
+
+	/**
+	 * Generates and solves a puzzle on the calling thread.
+	 * @param arcade Whether the puzzle is for arcade mode (or training mode).
+	 * @param level The arcade level.
+	 * @param levels The parameters of the arcade levels.
+	 * @return The solved puzzle.
+	 */
+	public static Puzzle generateSolved(boolean arcade, int level, LevelTable levels) {
+		Puzzle puzzle = generate(ThreadLocalRandom.current(), arcade, level, levels);
+		return solve(puzzle);
+	}
+
+	/**
+	 * Counts the solutions of a puzzle with the solver of the calling thread.
+	 * @param puzzle The puzzle to solve.
+	 * @return The solved puzzle.
+	 */
+	public static Puzzle solve(Puzzle puzzle) {
+		byte[] digits = new byte[puzzle.getDigitCount()];
+		puzzle.copyDigits(digits);
+		long count = SOLVERS.get().solve(digits, digits.length, puzzle.getGoal(), false);
+		return puzzle.withSolutionCount(count);
+	}
+
+	/**
+	 * Creates an endless parallel stream of solved puzzles, with the default
+	 * level parameters. Limit the stream to the number of puzzles needed, for
+	 * example {@code stream(true, 12, true).limit(1000000).forEach(bank::add)}.
+	 * @param arcade Whether the puzzles are for arcade mode (or training mode).
+	 * @param level The arcade level.
+	 * @param uniqueOnly True to only keep puzzles with exactly one solution.
+	 * @return The stream of puzzles, in no particular order.
+	 */
+	public static Stream<Puzzle> stream(boolean arcade, int level, boolean uniqueOnly) {
+		return stream(arcade, level, uniqueOnly, LevelTable.DEFAULT);
+	}
+
+	/**
+	 * Creates an endless parallel stream of solved puzzles
+	 * @param arcade Whether the puzzles are for arcade mode (or training mode).
+	 * @param level The arcade level.
+	 * @param uniqueOnly True to only keep puzzles with exactly one solution.
+	 * @param levels The parameters of the arcade levels.
+	 * @return The stream of puzzles, in no particular order.
+	 */
+	public static Stream<Puzzle> stream(boolean arcade, int level, boolean uniqueOnly, LevelTable levels) {
+		Stream<Puzzle> puzzles = Stream.generate(() -> generateSolved(arcade, level, levels)).parallel();
+		return uniqueOnly ? puzzles.filter(puzzle -> puzzle.getSolutionCount() == 1) : puzzles;
+	}
+
+	/**
+	 * Creates an endless parallel stream of solved arcade puzzles
+	 * @param level The arcade level.
+	 * @return The stream of puzzles, in no particular order.
+	 */
+	public static Stream<Puzzle> arcadeLevel(int level) {
+		return stream(true, level, false);
+	}
+}
@@ -0,0 +1,162 @@
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The prefetcher draws puzzles from another source ahead of time, on a
+ * background thread, so a new game never waits for a puzzle to be generated.
+ * It keeps a bounded queue of solved puzzles for each arcade level played,
+ * and a single one for training, whose puzzles do not depend on the level
+ * the player left arcade mode at. When a puzzle is taken, its queue is
+ * refilled in the background, along with the queues of the next arcade level
+ * (for a level up) and of the first one (for a restart). If a queue is empty,
+ * the puzzle is drawn on the calling thread as without prefetching.
+ *
+ */
+public class PuzzlePrefetcher implements PuzzleSource {
+	/**
+	 * Default number of puzzles prepared for each mode and level
+	 */
+	public static final int DEFAULT_DEPTH = 3;
+
+	private final PuzzleSource source;
+	private final int depth;
+	/**
+	 * Prepared puzzles, by mode and level (see {@link #key(boolean, int)})
+	 */
+	private final ConcurrentMap<Integer, BlockingQueue<Puzzle>> queues = new ConcurrentHashMap<Integer, BlockingQueue<Puzzle>>();
+	/**
+	 * Queues waiting for the producer
+	 */
+	private final Set<Integer> scheduled = ConcurrentHashMap.newKeySet();
+	private final ExecutorService producer;
+
+	/**
+	 * Constructor
+	 * @param source The source of the puzzles, which must be thread-safe.
+	 */
+	public PuzzlePrefetcher(PuzzleSource source) {
+		this(source, DEFAULT_DEPTH);
+	}
+
+	/**
+	 * Constructor
+	 * @param source The source of the puzzles, which must be thread-safe.
+	 * @param depth The number of puzzles prepared for each mode and level.
+	 */
+	public PuzzlePrefetcher(PuzzleSource source, int depth) {
+		if(source == null)
+			throw new IllegalArgumentException("Should provide a valid PuzzleSource!");
+		if(depth < 1)
+			throw new IllegalArgumentException("Should prepare at least one puzzle: " + depth);
+		this.source = source;
+		this.depth = depth;
+		this.producer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "puzzle-prefetcher");
+				// Prefetching never keeps the game running
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+		// A game starts in training mode, and arcade mode starts at level 1
+		prefetch(false, 1);
+		prefetch(true, 1);
+	}
+
+	@Override
+	public Puzzle nextPuzzle(Random random, boolean arcade, int level) {
+		Puzzle puzzle = queue(arcade, level).poll();
+		// Prepare the puzzles that may follow this one
+		prefetch(arcade, level);
+		if(arcade) {
+			prefetch(true, Math.min(level + 1, GameEngine.MAX_LEVEL));
+			prefetch(true, 1);
+		}
+		return (puzzle != null) ? puzzle : validate(source.nextPuzzle(random, arcade, level));
+	}
+
+	/**
+	 * Gets the number of puzzles ready for a mode and level
+	 * @param arcade Whether the puzzles are for arcade mode (or training mode).
+	 * @param level The arcade level.
+	 * @return The number of prepared puzzles.
+	 */
+	public int prepared(boolean arcade, int level) {
+		return queue(arcade, level).size();
+	}
+
+	/**
+	 * Stops the background thread
+	 */
+	public void close() {
+		producer.shutdownNow();
+	}
+
+	/**
+	 * Schedules the refill of a queue, unless it is already scheduled
+	 */
+	private void prefetch(final boolean arcade, final int level) {
+		final Integer key = key(arcade, level);
+		final BlockingQueue<Puzzle> queue = queue(arcade, level);
+		if(queue.remainingCapacity() == 0 || !scheduled.add(key) || producer.isShutdown())
+			return;
+		try {
+			producer.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						while(queue.remainingCapacity() > 0 && !Thread.currentThread().isInterrupted())
+							queue.offer(validate(source.nextPuzzle(ThreadLocalRandom.current(), arcade, level)));
+					} finally {
+						scheduled.remove(key);
+					}
+					// A puzzle may have been taken after the last check
+					if(queue.remainingCapacity() > 0 && !Thread.currentThread().isInterrupted())
+						prefetch(arcade, level);
+				}
+			});
+		} catch(RejectedExecutionException e) {
+			// The prefetcher was closed meanwhile
+			scheduled.remove(key);
+		}
+	}
+
+	/**
+	 * Solves a puzzle that was not solved by its source
+	 */
+	private static Puzzle validate(Puzzle puzzle) {
+		return (puzzle.getSolutionCount() == Puzzle.UNSOLVED) ? PuzzleGenerator.solve(puzzle) : puzzle;
+	}
+
+	/**
+	 * Gets the queue of a mode and level, creating it on first use
+	 */
+	private BlockingQueue<Puzzle> queue(boolean arcade, int level) {
+		Integer key = key(arcade, level);
+		BlockingQueue<Puzzle> queue = queues.get(key);
+		if(queue == null) {
+			queues.putIfAbsent(key, new ArrayBlockingQueue<Puzzle>(depth));
+			queue = queues.get(key);
+		}
+		return queue;
+	}
+
+	/**
+	 * @return the key of the queue of a mode and level, the same for every
+	 * training level
+	 */
+	private static Integer key(boolean arcade, int level) {
+		return arcade ? (level << 1) | 1 : 0;
+	}
+}
@@ -0,0 +1,18 @@
+import java.util.Random;
+
+/**
+ * A puzzle source provides the puzzles of new games to the {@link GameEngine}.
+ * Puzzles can be generated on demand ({@link PuzzleGenerator}) or drawn
+ * from a pre-generated bank ({@link PuzzleBank}).
+ *
+ */
+public interface PuzzleSource {
+	/**
+	 * Provides the puzzle of a new game
+	 * @param random The source of randomness of the game.
+	 * @param arcade Whether the game is in arcade mode (or training mode).
+	 * @param level The arcade level.
+	 * @return The puzzle.
+	 */
+	Puzzle nextPuzzle(Random random, boolean arcade, int level);
+}
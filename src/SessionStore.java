@@ -0,0 +1,341 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The session store saves the game in progress to a small binary file, so a
+ * session can be resumed after the game is closed or the machine restarted.
+ * Saves are written on a background thread and coalesced: while a save is
+ * being written, only the latest of the following ones is kept. The file is
+ * written aside and moved over the previous one, so it is never left half
+ * written.
+ * <p>
+ * The file holds (big-endian):
+ * <pre>
+ * int magic, short version, byte arcade, byte level, int resetCounter,
+ * long elapsedMillis, byte puzzleArcade, byte puzzleLevel,
+ * double doubleDigitProba, long solutionCount, int numberCount, numbers (1 byte each),
+ * groups (2 bits per tile: 0 not clicked, 1 single tile, 2 first tile of a pair, 3 second tile)
+ * </pre>
+ *
+ */
+public class SessionStore implements Closeable {
+	private static final int MAGIC = 0x4D535353;
+	/**
+	 * Version of the format
+	 */
+	private static final short VERSION = 1;
+	private static final int HEADER_SIZE = 42;
+
+	// Group codes of the tiles
+	private static final int NOT_CLICKED = 0;
+	private static final int SINGLE = 1;
+	private static final int PAIR_FIRST = 2;
+	private static final int PAIR_SECOND = 3;
+
+	/**
+	 * A saved session: the game in progress and the time spent on it
+	 */
+	public static final class Session {
+		private final Puzzle puzzle;
+		private final boolean arcadeEnabled;
+		private final int level;
+		private final int[] groups;
+		private final int resetCounter;
+		private final long elapsedMillis;
+
+		Session(Puzzle puzzle, boolean arcadeEnabled, int level, int[] groups, int resetCounter, long elapsedMillis) {
+			this.puzzle = puzzle;
+			this.arcadeEnabled = arcadeEnabled;
+			this.level = level;
+			this.groups = groups;
+			this.resetCounter = resetCounter;
+			this.elapsedMillis = elapsedMillis;
+		}
+
+		/**
+		 * @return the puzzle of the game
+		 */
+		public Puzzle getPuzzle() {
+			return puzzle;
+		}
+
+		/**
+		 * @return whether arcade mode was enabled
+		 */
+		public boolean isArcadeEnabled() {
+			return arcadeEnabled;
+		}
+
+		/**
+		 * @return the arcade level
+		 */
+		public int getLevel() {
+			return level;
+		}
+
+		/**
+		 * @return the packed groups of the user
+		 */
+		public int[] getGroups() {
+			return groups.clone();
+		}
+
+		/**
+		 * @return the number of resets in the game
+		 */
+		public int getResetCounter() {
+			return resetCounter;
+		}
+
+		/**
+		 * @return the time spent on the game, in milliseconds
+		 */
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+	}
+
+	/**
+	 * A save waiting for the writer
+	 */
+	private static final class Pending {
+		final GameSnapshot snapshot;
+		final long elapsedMillis;
+
+		Pending(GameSnapshot snapshot, long elapsedMillis) {
+			this.snapshot = snapshot;
+			this.elapsedMillis = elapsedMillis;
+		}
+	}
+
+	private final Path file;
+	private final Path temporary;
+	private final AtomicReference<Pending> pending = new AtomicReference<Pending>();
+	private final ExecutorService writer;
+	private final Runnable write = new Runnable() {
+		@Override
+		public void run() {
+			Pending save = pending.getAndSet(null);
+			if(save != null)
+				write(save);
+		}
+	};
+
+	/**
+	 * Constructor
+	 * @param file The file of the saved session.
+	 */
+	public SessionStore(Path file) {
+		if(file == null)
+			throw new IllegalArgumentException("Should provide a valid Path!");
+		this.file = file;
+		this.temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		this.writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "session-store");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Loads the saved session
+	 * @return The session, or null if none was saved.
+	 * @throws IOException if the file can not be read or is not a saved session.
+	 */
+	public Session load() throws IOException {
+		byte[] bytes;
+		try {
+			bytes = Files.readAllBytes(file);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+		try {
+			return decode(ByteBuffer.wrap(bytes));
+		} catch (IllegalArgumentException | BufferUnderflowException e) {
+			throw new IOException(file + ": invalid saved session (" + e + ")", e);
+		}
+	}
+
+	/**
+	 * Saves a game in the background. Only the latest save waiting for the
+	 * writer is written.
+	 * @param snapshot The state of the game.
+	 * @param elapsedMillis The time spent on the game, in milliseconds.
+	 */
+	public void save(GameSnapshot snapshot, long elapsedMillis) {
+		if(pending.getAndSet(new Pending(snapshot, elapsedMillis)) != null)
+			// The writer has not taken the previous save yet, and will take this one
+			return;
+		try {
+			writer.execute(write);
+		} catch (RejectedExecutionException e) {
+			// Closed: the session is no longer saved
+		}
+	}
+
+	/**
+	 * Saves the game of a model in the background after every change
+	 * @param model The model of the game.
+	 */
+	public void autosave(final GameModel model) {
+		model.subscribe(new GameListener() {
+			@Override
+			public void gameChanged(GameEvent event) {
+				save(model);
+			}
+		}, GameModel.MessCode.NEW, GameModel.MessCode.ARCADE, GameModel.MessCode.RESTART,
+				GameModel.MessCode.RESET, GameModel.MessCode.SUMCHANGED);
+	}
+
+	/**
+	 * Saves the game of a model in the background, with the time of its clock
+	 * @param model The model of the game.
+	 */
+	public void save(GameModel model) {
+		save(model.getSnapshot(), model.getClock().getElapsedMillis());
+	}
+
+	/**
+	 * Writes the saves waiting for the writer and stops it
+	 */
+	@Override
+	public void close() {
+		writer.shutdown();
+		try {
+			writer.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Writes a save, on the writer thread
+	 */
+	private void write(Pending save) {
+		try {
+			ByteBuffer content = ByteBuffer.wrap(encode(save.snapshot, save.elapsedMillis));
+			try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE,
+					StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				while(content.hasRemaining())
+					channel.write(content);
+				// The save must survive a power cut once moved in place
+				channel.force(true);
+			}
+			try {
+				Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			System.err.println("Could not save the session to " + file + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Encodes a game
+	 * @param snapshot The state of the game.
+	 * @param elapsedMillis The time spent on the game, in milliseconds.
+	 * @return The content of the file.
+	 */
+	static byte[] encode(GameSnapshot snapshot, long elapsedMillis) {
+		Puzzle puzzle = snapshot.getPuzzle();
+		int[] numbers = puzzle.getNumbers();
+		int tiles = puzzle.getDigitCount();
+		ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + numbers.length + (tiles + 3) / 4);
+		out.putInt(MAGIC);
+		out.putShort(VERSION);
+		out.put((byte) (snapshot.isArcadeEnabled() ? 1 : 0));
+		out.put((byte) snapshot.getLevel());
+		out.putInt(snapshot.getResetCounter());
+		out.putLong(elapsedMillis);
+		out.put((byte) (puzzle.isArcade() ? 1 : 0));
+		out.put((byte) puzzle.getLevel());
+		out.putDouble(puzzle.getDoubleDigitProba());
+		out.putLong(puzzle.getSolutionCount());
+		out.putInt(numbers.length);
+		for(int number : numbers)
+			out.put((byte) number);
+		// Four tiles per byte, the first tile in the lowest bits
+		int packed = 0;
+		for(int i = 0; i < tiles; ++i) {
+			int group = snapshot.groupAt(i);
+			int code = NOT_CLICKED;
+			if(group != Group.EMPTY)
+				code = (Group.length(group) == 1) ? SINGLE : (Group.start(group) == i) ? PAIR_FIRST : PAIR_SECOND;
+			packed |= code << (2 * (i & 3));
+			if((i & 3) == 3 || i == tiles - 1) {
+				out.put((byte) packed);
+				packed = 0;
+			}
+		}
+		return out.array();
+	}
+
+	/**
+	 * Decodes a saved session
+	 * @param in The content of the file.
+	 * @return The session.
+	 */
+	static Session decode(ByteBuffer in) {
+		if(in.getInt() != MAGIC)
+			throw new IllegalArgumentException("not a saved session");
+		short version = in.getShort();
+		if(version != VERSION)
+			throw new IllegalArgumentException("unsupported version " + version);
+		boolean arcade = in.get() != 0;
+		int level = in.get();
+		int resetCounter = in.getInt();
+		long elapsedMillis = in.getLong();
+		boolean puzzleArcade = in.get() != 0;
+		int puzzleLevel = in.get();
+		double proba = in.getDouble();
+		long solutionCount = in.getLong();
+		int[] numbers = new int[in.getInt()];
+		if(numbers.length < 0 || numbers.length > in.remaining())
+			throw new IllegalArgumentException("invalid number count " + numbers.length);
+		for(int i = 0; i < numbers.length; ++i)
+			numbers[i] = in.get();
+		Puzzle puzzle = new Puzzle(numbers, puzzleArcade, puzzleLevel, proba, solutionCount);
+		int tiles = puzzle.getDigitCount();
+		int[] groups = new int[tiles];
+		int groupCount = 0;
+		int packed = 0;
+		int previous = NOT_CLICKED;
+		for(int i = 0; i < tiles; ++i) {
+			if((i & 3) == 0)
+				packed = in.get();
+			int code = (packed >>> (2 * (i & 3))) & 3;
+			// The second tile of a pair must follow the first
+			if((code == PAIR_SECOND) != (previous == PAIR_FIRST))
+				throw new IllegalArgumentException("invalid pair at tile " + i);
+			if(code == SINGLE)
+				groups[groupCount++] = Group.of(i, 1);
+			else if(code == PAIR_FIRST)
+				groups[groupCount++] = Group.of(i, 2);
+			previous = code;
+		}
+		if(previous == PAIR_FIRST)
+			throw new IllegalArgumentException("pair out of the puzzle");
+		int[] saved = new int[groupCount];
+		System.arraycopy(groups, 0, saved, 0, groupCount);
+		return new Session(puzzle, arcade, level, saved, resetCounter, elapsedMillis);
+	}
+}
@@ -0,0 +1,187 @@
+import java.util.Arrays;
+
+/**
+ * The solver counts every way to split the digits of a puzzle into groups
+ * of one or two consecutive digits whose values sum to the goal, and finds
+ * one of these solutions.
+ * It uses dynamic programming over (position, partial sum): the number of
+ * ways to group the first p digits into a sum s is the number of ways for
+ * the first p-1 digits to reach s minus the last digit, plus the number of
+ * ways for the first p-2 digits to reach s minus the last pair.
+ * Only the last three rows of the table are kept, and the tables are reused
+ * from one puzzle to the next, so a solver instance should be reused (one per
+ * thread) when solving many puzzles.
+ *
+ */
+public class Solver {
+	/**
+	 * Rolling rows of the table: ways to reach each sum for the last three positions
+	 */
+	private long[][] rows = new long[3][0];
+	/**
+	 * Reachable sums for every position, as bit sets (only used to find a solution)
+	 */
+	private long[] reachable = new long[0];
+	private int words;
+	private long solutionCount;
+	private int[] witness;
+
+	/**
+	 * Counts the solutions of a puzzle given as a suite of digits.
+	 * @param numberSuite The digits of the puzzle (for example {@link GameModel#getNumberSuite()}).
+	 * @param goal The sum to reach.
+	 * @return The number of solutions, saturated at {@link Long#MAX_VALUE}.
+	 */
+	public long solve(String numberSuite, int goal) {
+		byte[] digits = new byte[numberSuite.length()];
+		for(int i = 0; i < digits.length; ++i)
+			digits[i] = (byte) Character.getNumericValue(numberSuite.charAt(i));
+		return solve(digits, digits.length, goal, true);
+	}
+
+	/**
+	 * Counts the solutions of a puzzle.
+	 * @param digits The digits of the puzzle.
+	 * @param length The number of digits to use from the array.
+	 * @param goal The sum to reach.
+	 * @param findWitness True to also find one solution (see {@link #getWitness()}).
+	 * @return The number of solutions, saturated at {@link Long#MAX_VALUE}.
+	 */
+	public long solve(byte[] digits, int length, int goal, boolean findWitness) {
+		this.solutionCount = 0;
+		this.witness = null;
+		if(goal < 0)
+			return 0;
+		if(rows[0].length < goal + 1)
+			rows = new long[3][goal + 1];
+		if(findWitness) {
+			words = (goal >>> 6) + 1;
+			long size = (long) (length + 1) * words;
+			if(size > Integer.MAX_VALUE)
+				throw new IllegalArgumentException("Puzzle too large to find a solution: " + length + " digits");
+			if(reachable.length < size)
+				reachable = new long[(int) size];
+			else
+				Arrays.fill(reachable, 0, (int) size, 0L);
+		}
+
+		// Rows for positions p-2, p-1 and p, with the range of their non-zero sums
+		long[] before = rows[0], previous = rows[1], current = rows[2];
+		int beforeLow = 1, beforeHigh = 0;
+		int previousLow = 0, previousHigh = 0;
+		int currentLow = 1, currentHigh = 0;
+		for(int i = 0; i < 3; ++i)
+			Arrays.fill(rows[i], 0, goal + 1, 0L);
+		// There is exactly one way to group zero digits: the empty sum
+		previous[0] = 1;
+		if(findWitness)
+			reachable[0] = 1L;
+
+		for(int p = 1; p <= length; ++p) {
+			// Clear the row that is about to be reused for position p
+			for(int s = currentLow; s <= currentHigh; ++s)
+				current[s] = 0;
+			int low = Integer.MAX_VALUE, high = -1;
+			// The last digit alone
+			int single = digits[p - 1];
+			if(previousLow <= previousHigh && previousLow + single <= goal) {
+				int end = Math.min(previousHigh, goal - single);
+				for(int s = previousLow; s <= end; ++s)
+					current[s + single] = previous[s];
+				low = previousLow + single;
+				high = end + single;
+			}
+			// The last two digits as a pair
+			if(p >= 2) {
+				int pair = digits[p - 2] * 10 + single;
+				if(beforeLow <= beforeHigh && beforeLow + pair <= goal) {
+					int end = Math.min(beforeHigh, goal - pair);
+					for(int s = beforeLow; s <= end; ++s) {
+						long ways = current[s + pair] + before[s];
+						current[s + pair] = (ways < 0) ? Long.MAX_VALUE : ways;
+					}
+					low = Math.min(low, beforeLow + pair);
+					high = Math.max(high, end + pair);
+				}
+			}
+			if(findWitness) {
+				int offset = p * words;
+				for(int s = low; s <= high; ++s)
+					if(current[s] != 0)
+						reachable[offset + (s >>> 6)] |= 1L << s;
+			}
+			// Rotate the rows, the oldest one is reused for the next position
+			long[] recycled = before;
+			currentLow = beforeLow;
+			currentHigh = beforeHigh;
+			before = previous;
+			beforeLow = previousLow;
+			beforeHigh = previousHigh;
+			previous = current;
+			previousLow = (high < 0) ? 1 : low;
+			previousHigh = high;
+			current = recycled;
+		}
+		rows[0] = before;
+		rows[1] = previous;
+		rows[2] = current;
+
+		if(goal >= previousLow && goal <= previousHigh)
+			this.solutionCount = previous[goal];
+		if(findWitness && solutionCount > 0)
+			this.witness = findWitness(digits, length, goal);
+		return solutionCount;
+	}
+
+	/**
+	 * Walks the reachable sums back from the last position to build one solution.
+	 * @return The groups of the solution, packed with {@link Group#of(int, int)}.
+	 */
+	private int[] findWitness(byte[] digits, int length, int goal) {
+		int[] groups = new int[length];
+		int count = 0;
+		int p = length;
+		int remaining = goal;
+		while(p > 0) {
+			int single = digits[p - 1];
+			if(remaining >= single && isReachable(p - 1, remaining - single)) {
+				groups[count++] = Group.of(p - 1, 1);
+				remaining -= single;
+				p -= 1;
+			}
+			else {
+				groups[count++] = Group.of(p - 2, 2);
+				remaining -= digits[p - 2] * 10 + single;
+				p -= 2;
+			}
+		}
+		// Groups were found from the end, put them back in order
+		int[] ordered = new int[count];
+		for(int i = 0; i < count; ++i)
+			ordered[i] = groups[count - 1 - i];
+		return ordered;
+	}
+
+	/**
+	 * @return whether the first digits of the puzzle can be grouped into a sum
+	 */
+	private boolean isReachable(int position, int sum) {
+		return (reachable[position * words + (sum >>> 6)] & (1L << sum)) != 0;
+	}
+
+	/**
+	 * @return the number of solutions found by the last call to solve
+	 */
+	public long getSolutionCount() {
+		return solutionCount;
+	}
+
+	/**
+	 * @return one solution found by the last call to solve, as groups packed
+	 * with {@link Group#of(int, int)} in the order of the tiles, or null if
+	 * there is no solution or none was requested
+	 */
+	public int[] getWitness() {
+		return witness;
+	}
+}
@@ -1,11 +1,10 @@
 import java.awt.BorderLayout;
 import java.awt.Color;
-import java.awt.Component;
 import java.awt.Font;
+import java.awt.Graphics;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.Observable;
-import java.util.Observer;
+import java.util.Arrays;
 
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
@@ -17,7 +16,7 @@ import javax.swing.JPanel;
  * The tile panel displays all the tiles (one per digit) of the game.
  *
  */
-public class TilePanel extends JPanel  implements Observer{
+public class TilePanel extends JPanel implements GameListener{
 
 	/**
 	 * 
@@ -29,7 +28,24 @@ public class TilePanel extends JPanel  implements Observer{
 	 */
 	private GameModel gameModel;
 	private ColorGenerator colorgen = new ColorGenerator();
-	private Tile[] tiles=null;
+	/**
+	 * Font of the digits, shared by every tile
+	 */
+	private static final Font TILE_FONT = new Font("Bold", Font.BOLD, 85);
+	/**
+	 * Pool of tiles: the first tileCount tiles are bound to the current game
+	 */
+	private Tile[] tiles = new Tile[0];
+	private int tileCount;
+	/**
+	 * Colour of each group, indexed by the id of the group in the game model
+	 */
+	private Color[] groupColours = new Color[0];
+	/**
+	 * Group given each colour: an id freed by the game model and reused by
+	 * another group gets a new colour
+	 */
+	private int[] colouredGroups = new int[0];
 
 	/**
 	 * Constructor
@@ -39,163 +55,124 @@ public class TilePanel extends JPanel  implements Observer{
 		if (gameModel == null)
 			throw new IllegalArgumentException("Should provide a valid instance of GameModel!");
 		this.gameModel = gameModel;
-		gameModel.addObserver(this);
+		gameModel.subscribe(this, GameModel.MessCode.NEW, GameModel.MessCode.ARCADE,
+				GameModel.MessCode.RESTART, GameModel.MessCode.RESET, GameModel.MessCode.SUMCHANGED);
 		this.setLayout(new BoxLayout(this,BoxLayout.LINE_AXIS));
-		initTiles();
+		bindTiles();
 	}
 	
 	/**
-	 * Method that initializes the tiles and sets up their listeners
+	 * Binds the tiles to the digits of the current game. Tiles are created
+	 * once and reused from one game to the next; tiles that are not needed
+	 * by a smaller game are only removed from the panel.
 	 */
-	private void initTiles(){
-		// Basic example :
-		// Remove tiles to make sure there are no left overs on init
-		if(tiles != null)
-			for (int i=0; i< tiles.length; ++i) {
-				this.remove(tiles[i]);
+	private void bindTiles(){
+		long begin = gameModel.getMetrics().begin();
+		int count = gameModel.getNumberOfTiles();
+		if(tiles.length < count)
+			tiles = Arrays.copyOf(tiles, count);
+		if(groupColours.length < count) {
+			groupColours = new Color[count];
+			colouredGroups = new int[count];
+		}
+		else
+			Arrays.fill(groupColours, null);
+		for(int i=0; i< count ; ++i){
+			if(tiles[i] == null)
+				tiles[i] = createTile();
+			// Binds the tile to its digit
+			tiles[i].setValue(gameModel.getDigit(i));
+			tiles[i].setPosition(i);
+			((JLabel) tiles[i].getComponent(0)).setText(Integer.toString(tiles[i].getValue()));
+			if(i >= tileCount)
+				this.add(tiles[i]);
+		}
+		// Remove the tiles left over from a larger game
+		for(int i=count; i< tileCount; ++i)
+			this.remove(tiles[i]);
+		tileCount = count;
+		colorgen.reset();
+		// The groups of a restored game are coloured as if just selected
+		GameSnapshot snapshot = gameModel.getSnapshot();
+		for(int i=0; i< count ; ++i){
+			if(snapshot.groupIdAt(i) >= 0)
+				groupColour(snapshot, i);
+		}
+		refreshTiles();
+		this.revalidate();
+		this.repaint();
+		gameModel.getMetrics().end(GameMetrics.Probe.REBUILD, begin);
+	}
+	
+	/**
+	 * Creates a tile and sets up its listener
+	 * @return The tile, to bind to a digit.
+	 */
+	private Tile createTile(){
+		Tile tile = new Tile();
+		// Sets a layout and a border for the tile
+		tile.setLayout(new BorderLayout());
+		tile.setBorder(BorderFactory.createLineBorder(Color.black));
+		// Adds JLabel to contain the number. The label covers the tile,
+		// so its paints are the paints of the tile.
+		JLabel label = new JLabel() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void paintComponent(Graphics g) {
+				long begin = gameModel.getMetrics().begin();
+				super.paintComponent(g);
+				gameModel.getMetrics().painted(begin);
 			}
-		// Empties the tiles list
-		tiles = null;
-		
-		// Refills the tiles list
-		tiles = new Tile[gameModel.numberOfTiles];
-		for(int i=0; i< tiles.length ; ++i){
-			// Creates the tile
-			tiles[i] = new Tile(Character.getNumericValue(this.gameModel.numberSuite.charAt(i)), i+1);
-			// Sets a layout and a border for the tile
-			tiles[i].setLayout(new BorderLayout());
-			tiles[i].setBorder(BorderFactory.createLineBorder(Color.black));
-			// Adds JLabel to contain the number
-			JLabel label = new JLabel(Integer.toString(tiles[i].getValue()));
-			// Sets font for the number
-			label.setFont(new Font("Bold", Font.BOLD, 85));
-			// Adds a white background and sets it to opaque for the JLabel
-			label.setBackground(Color.WHITE);
-			label.setOpaque(true);
-			// Sets a BorderLayout to the tile
-			tiles[i].add(label, BorderLayout.CENTER);
-			this.add(tiles[i]);
-			// ********************IMPORTANT*******************************
-			// ********DOES NOT UPDATE THE VIEW IN THE MOUSE LISTENER******
-			// This code, part of the 'controller', must only update
-			// the state of gameModel, which will notify TilePanel than
-			// its state has been changed by calling its method "update". 
-			// So, the view must be updated from the method "update". 
-			tiles[i].addMouseListener(new MouseAdapter(){				
-				/**
-				 * Method that is called on mouseClick
-				 */
-				public void mouseClicked(MouseEvent e) {
-					
-					// Gets the tile that was clicked
-					Tile tile = (Tile)e.getSource();
-					// Makes sure this tile was not clicked before
-					if(!tile.getClicked()) {
-						// Updates the clicked tile counter
-						++gameModel.clickedCounter;
-						// Sets tile to clicked 
-						tile.setClicked();
-					}	
-					// Remove this tile from its previous group 
-					removeTileFromPreviousGroup(tile);
-				
-					// Add the tile to its new group
-					gameModel.userGroups.add(new Group(tile));
-					// Calls function to notify observers
-					gameModel.sumChanged();
-					// Checks if game is over
-					checkIfGameOver();
-									
-					// If game isn't won or lost
-					if(!gameModel.gameOver){
-						// Sets color for the group
-						Component tileColor = new JLabel();
-						tileColor = tile.getComponentAt(1,1);
-						tileColor.setBackground(colorgen.getCurrent());
-						changeColour();
-					}
-				}
-				// Code for group selection
-				// Required variables
-				private Component tileColor2 = new JLabel();
-				boolean mouseEnteredNextTile = false;
-				// Mouse pressed boolean
-				boolean mouseDown = false;
-				
-				// Sets boolean to true if mouse is being pressed
-				public void mousePressed(MouseEvent e) {
-					mouseDown = true;
-				}
-				// Sets boolean to false if mouse is being pressed
-				public void mouseReleased(MouseEvent e) {
-					mouseDown = false;
-				}
-				// Selects the tile that was entered and
-				// keeps it in a variable along with the JLabel
-				// that contains its color
-				public void mouseEntered(MouseEvent e) {
-					Tile tile1 = (Tile) e.getSource();
-					tileColor2 = tile1.findComponentAt(1,1);
-				}
-				
-				// Selects the next valid tile when the mouse leaves
-				// the first clicked tile if the mouse is held down
-				public void mouseExited(MouseEvent e) {
-					// Will be used to keep the initial tile's position
-					int tilePosition;
-					// Sets boolean to true since the mouse exited the first tile
-					mouseEnteredNextTile = true;
-					// Initialize the label that will contain the second tile's color
-					Component tileColor = new JLabel();
-					// Get the tile
-					Tile tile1 = (Tile) e.getSource();
-					// Initialize a new tile to contain the second tile
-					Tile tile2 = new Tile();
-					// Checks if mouse is being held down and if mouse exited the first tile 
-					if(mouseDown && mouseEnteredNextTile) {
-						// Gets the first tile's position
-						tilePosition = tile1.getPosition();
-						// Increments the first tile's position by one
-						tilePosition += 1;
-						// Searches the tile at that incremented position
-						for (int i = 0; i < tilePosition; ++i) {
-							tile2 = tiles[i];
-						}
-						// Notifies the game model that the sum changed
-						gameModel.sumChanged();
-						// Sets the first tile as clicked if it isn't
-						if(!tile1.getClicked()) {
-							tile1.setClicked();
-							// Increment the counter
-							++gameModel.clickedCounter;
-						}
-						// Remove this tile from its previous group 
-						removeTileFromPreviousGroup(tile1);
-						
-						// Sets the second tile as clicked if it isn't
-						if(!tile2.getClicked()) {
-							tile2.setClicked();
-							// Increment the counter
-							++gameModel.clickedCounter;
-						}
-						// Remove this tile from its previous group 
-						removeTileFromPreviousGroup(tile2);
-						// Add the tiles to their new group
-						gameModel.userGroups.add(new Group(tile1, tile2));
-						// Notifies the game model that the sum changed
-						gameModel.sumChanged();
-						// Sets the color for both tiles
-						tileColor = tile2.findComponentAt(1,1);
-						tileColor2.setBackground(colorgen.getCurrent());
-						tileColor.setBackground(colorgen.getCurrent());
-						colorgen.next();
-						// Checks if game is over
-						checkIfGameOver();
-					}
-				}
+		};
+		// Sets font for the number
+		label.setFont(TILE_FONT);
+		// Adds a white background and sets it to opaque for the JLabel
+		label.setBackground(Color.WHITE);
+		label.setOpaque(true);
+		// Sets a BorderLayout to the tile
+		tile.add(label, BorderLayout.CENTER);
+		// The listener only forwards the selections to the game model,
+		// which applies the rules of the game.
+		tile.addMouseListener(new MouseAdapter(){
+			// Mouse pressed boolean
+			boolean mouseDown = false;
 
-			});
-		}
+			/**
+			 * Method that is called on mouseClick
+			 */
+			public void mouseClicked(MouseEvent e) {
+				// Gets the tile that was clicked
+				Tile tile = (Tile)e.getSource();
+				int position = tile.getPosition();
+				// Sets color for the group if game isn't won or lost
+				if(gameModel.clickTile(position) && !gameModel.isGameOver())
+					newGroupColour(position);
+			}
+			
+			// Sets boolean to true if mouse is being pressed
+			public void mousePressed(MouseEvent e) {
+				mouseDown = true;
+			}
+			// Sets boolean to false if mouse is being pressed
+			public void mouseReleased(MouseEvent e) {
+				mouseDown = false;
+			}
+			
+			// Selects the tile and the next one as a pair when the mouse
+			// leaves the first tile while being held down
+			public void mouseExited(MouseEvent e) {
+				if(!mouseDown)
+					return;
+				Tile tile = (Tile) e.getSource();
+				int position = tile.getPosition();
+				// Sets the color for both tiles if game isn't won or lost
+				if(gameModel.selectPair(position) && !gameModel.isGameOver())
+					newGroupColour(position);
+			}
+
+		});
+		return tile;
 	}
 	
 	/**
@@ -206,71 +183,92 @@ public class TilePanel extends JPanel  implements Observer{
 	}
 	
 	/**
-	 * Removes a tile from its previous group.
-	 * @param tile The tile to remove.
+	 * Gives the active colour to the group of a tile, which has just been created
+	 * @param position The position of a tile of the group.
 	 */
-	public void removeTileFromPreviousGroup(Tile tile) {
-		for(int i = 0; i < gameModel.userGroups.size(); ++i) {
-			if(gameModel.userGroups.get(i).contains(tile)) {
-				gameModel.userGroups.get(i).removeTile(tile);
-			}
-		}	
+	private void newGroupColour(int position) {
+		GameSnapshot snapshot = gameModel.getSnapshot();
+		int id = snapshot.groupIdAt(position);
+		groupColours[id] = colorgen.getCurrent();
+		colouredGroups[id] = snapshot.groupAt(position);
+		changeColour();
 	}
 	
 	/**
-	 * Method that checks if the game is over. It modifies gameModel attributes
-	 * accordingly. It is called each time the sum is changed.
+	 * Gets the colour of the group of a tile. A group gets the active colour
+	 * when its id has no colour yet or had the colour of another group: a
+	 * group of a restored game, or brought back by an undo or a redo.
+	 * @param snapshot The state of the game.
+	 * @param position The position of a tile in a group.
+	 * @return The colour of the group.
 	 */
-	public void checkIfGameOver() {
-		Tile tile = new Tile();
-		// Checks if the number of clicked tiles is equal to the total number of tiles
-		// for victory conditions
-		if(gameModel.clickedCounter == gameModel.numberOfTiles) {
-			// Game is won or lost
-			gameModel.gameOver = true;
-			for(int i=0; i< tiles.length ; ++i){
-				tile = tiles[i];
-				// Gets each tile
-				Component label = new JLabel();
-				label = tile.getComponentAt(1,1);
-				// Checks if total sum is equal to goal and sets either green or red
-				// as background color
-				if(gameModel.goal == gameModel.currentSum) 
-					label.setBackground(Color.green);
-				else 
-					label.setBackground(Color.red);
-			}
-			// Increment level on win
-			if(gameModel.goal == gameModel.currentSum) {
-				if(gameModel.arcadeEnabled && gameModel.level < 20)
-					++gameModel.level;
-				gameModel.gameWon = true;
-			}
+	private Color groupColour(GameSnapshot snapshot, int position) {
+		int id = snapshot.groupIdAt(position);
+		int group = snapshot.groupAt(position);
+		if(groupColours[id] == null || colouredGroups[id] != group) {
+			groupColours[id] = colorgen.getCurrent();
+			colouredGroups[id] = group;
+			changeColour();
 		}
+		return groupColours[id];
+	}
+
+	/**
+	 * Gets the colour of a tile from the state of the game: green or red
+	 * once the game is over, the colour of its group, or white.
+	 * @param position The position of the tile.
+	 * @return The background colour of the tile.
+	 */
+	private Color tileColour(int position) {
+		if(gameModel.isGameOver())
+			return gameModel.isGameWon() ? Color.green : Color.red;
+		GameSnapshot snapshot = gameModel.getSnapshot();
+		return (snapshot.groupIdAt(position) < 0) ? Color.white : groupColour(snapshot, position);
+	}
+	
+	/**
+	 * Sets the background colour of a tile according to the state of the game
+	 * @param position The position of the tile.
+	 */
+	private void refreshTile(int position) {
+		tiles[position].getComponent(0).setBackground(tileColour(position));
+	}
+	
+	/**
+	 * Sets the background colour of every tile according to the state of the game
+	 */
+	private void refreshTiles() {
+		for(int i=0; i< tileCount ; ++i)
+			refreshTile(i);
 	}
 	
 	/** 
-	 * This method is called when the observer (GameModel)
-	 * calls setChanged() and notifyObservers().
+	 * This method is called when the GameModel posts an event
+	 * this panel subscribed to.
 	 * USE THIS METHOD TO UPDATE THE VIEW IN ACCORDANCE TO THE MODEL STATE. 
 	 * */
 	@Override
-	public void update(Observable o, Object arg) {
-		if(!(arg instanceof GameModel.MessCode))
-			return;
-		GameModel.MessCode code = (GameModel.MessCode) arg;
-		if(code==GameModel.MessCode.RESET){
+	public void gameChanged(GameEvent event) {
+		GameModel.MessCode code = event.getCode();
+		if(code==GameModel.MessCode.NEW || code==GameModel.MessCode.ARCADE ||
+				code==GameModel.MessCode.RESTART){
+			// A new game has started, bind the tiles to its digits
+			bindTiles();
+		}
+		else if(code==GameModel.MessCode.RESET){
 			// The game has been reset. Use information of the gameModel 
 			// to update the TilePanel accordingly
-			// Iterate through the whole tiles list
-			for(int i=0; i< tiles.length ; ++i){
-				// Set each tile to not clicked and set background to white
-				Tile tile = tiles[i];
-				tile.setNotClicked();
-				Component label = new JLabel();
-				label = tile.getComponentAt(1,1);
-				label.setBackground(Color.white);
-			}
+			// No tile is in a group anymore
+			refreshTiles();
+		}
+		else if(code==GameModel.MessCode.SUMCHANGED){
+			if(gameModel.isGameOver())
+				// Every tile has been clicked, show whether the game is won
+				refreshTiles();
+			else
+				// Only the tiles whose group changed need a new colour
+				for(int i = event.getFirstTile(); i >= 0 && i <= event.getLastTile(); ++i)
+					refreshTile(i);
 		}
 	}
 }
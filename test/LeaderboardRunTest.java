@@ -0,0 +1,85 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Checks the runs the {@link GameModel} records in its {@link Leaderboard}:
+ * the first game of a model is timed like the next ones, and an arcade run
+ * is recorded once when its last level is won, however many games are won
+ * at the last level afterwards.
+ * Run with assertions enabled, from the root of the repository:
+ * <pre>
+ * javac -d out src/*.java test/*.java
+ * java -ea -cp out LeaderboardRunTest
+ * </pre>
+ *
+ */
+public class LeaderboardRunTest {
+	/**
+	 * Every puzzle is 1 and 2, won by clicking both tiles
+	 */
+	private static final PuzzleSource EASY = (random, arcade, level) -> new Puzzle(new int[] { 1, 2 }, arcade,
+			level, 0.0, 1);
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		firstGameIsTimed();
+		lastLevelEndsTheRun();
+		System.out.println("LeaderboardRunTest passed");
+	}
+
+	/**
+	 * The win of the first game of a fresh model is recorded with its time
+	 */
+	private static void firstGameIsTimed() throws IOException, InterruptedException {
+		Path dir = Files.createTempDirectory("leaderboard-test");
+		try (Leaderboard leaderboard = new Leaderboard(dir.resolve("leaderboard.bin"))) {
+			GameModel model = new GameModel(EASY, GameEventBus.direct(), 1);
+			model.setLeaderboard(leaderboard);
+			Thread.sleep(20);
+			win(model);
+			Leaderboard.Run best = leaderboard.getBest(Leaderboard.TRAINING, 0);
+			assert best != null : "The training win is not recorded";
+			assert best.getMillis() >= 20 : "The first game is not timed: " + best;
+		}
+	}
+
+	/**
+	 * The games won at the last level once the run is recorded are not
+	 * recorded again, until a new run starts
+	 */
+	private static void lastLevelEndsTheRun() throws IOException, InterruptedException {
+		Path dir = Files.createTempDirectory("leaderboard-test");
+		try (Leaderboard leaderboard = new Leaderboard(dir.resolve("leaderboard.bin"))) {
+			GameModel model = new GameModel(EASY, GameEventBus.direct(), 1);
+			model.setLeaderboard(leaderboard);
+			model.arcadeGame();
+			for(int level = 1; level <= GameEngine.MAX_LEVEL; ++level) {
+				Thread.sleep(1);
+				win(model);
+				model.nextGame();
+			}
+			// The engine stays at the last level
+			win(model);
+			model.nextGame();
+			win(model);
+			List<Leaderboard.Run> runs = leaderboard.getTop(Leaderboard.ARCADE, GameEngine.MAX_LEVEL, 10);
+			assert runs.size() == 1 : "The run is recorded more than once: " + runs;
+			assert runs.get(0).getMillis() >= GameEngine.MAX_LEVEL : "The run is not timed: " + runs;
+			// A restart starts a new run, recorded when it ends
+			model.restartGame();
+			win(model);
+			model.arcadeGame();
+			assert leaderboard.getTop(Leaderboard.ARCADE, 1, 10).size() == 1 : "The new run is not recorded";
+		}
+	}
+
+	/**
+	 * Wins the current game of a model, clicking every tile
+	 */
+	private static void win(GameModel model) {
+		for(int i = 0; i < model.getNumberOfTiles(); ++i)
+			model.clickTile(i);
+		assert model.isGameWon() : "The game is not won";
+	}
+}